@@ -0,0 +1,117 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Small JMH-style harness: warmup iterations, then timed measurement iterations.
+// Each iteration calls the operation in a loop until its time budget is used up,
+// results are reported as average time per operation and throughput.
+public final class Bench {
+
+    // operation under test; the return value is consumed so the JIT cannot drop the work
+    @FunctionalInterface
+    public interface Op {
+        Object run() throws Exception;
+    }
+
+    public record Result(String name, double nsPerOp, double opsPerSec, long ops) {
+    }
+
+    private final int warmupIterations;
+    private final int measureIterations;
+    private final long iterationNanos;
+    private final String filter;
+    private final List<Result> results = new ArrayList<>();
+
+    private long sink;
+
+    public Bench(int warmupIterations, int measureIterations, long iterationMillis, String filter) {
+        this.warmupIterations = warmupIterations;
+        this.measureIterations = measureIterations;
+        this.iterationNanos = iterationMillis * 1_000_000L;
+        this.filter = filter;
+    }
+
+    // reads --warmup N --iterations N --time MS --filter TEXT, anything else is ignored
+    public static Bench fromArgs(String[] args) {
+        int warmup = 3;
+        int iterations = 5;
+        long millis = 500;
+        String filter = null;
+        for (int i = 0; i + 1 < args.length; i++) {
+            switch (args[i]) {
+                case "--warmup" -> warmup = Integer.parseInt(args[++i]);
+                case "--iterations" -> iterations = Integer.parseInt(args[++i]);
+                case "--time" -> millis = Long.parseLong(args[++i]);
+                case "--filter" -> filter = args[++i];
+                default -> { }
+            }
+        }
+        return new Bench(warmup, iterations, millis, filter);
+    }
+
+    // value of "--name v" in args, or the default
+    public static String option(String[] args, String name, String def) {
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (args[i].equals(name)) return args[i + 1];
+        }
+        return def;
+    }
+
+    // whether run(name, ...) would measure anything, to skip expensive setup otherwise
+    public boolean accepts(String name) {
+        return filter == null || name.contains(filter);
+    }
+
+    public void run(String name, Op op) throws Exception {
+        if (!accepts(name)) return;
+
+        for (int i = 0; i < warmupIterations; i++) {
+            iteration(op);
+        }
+        long ops = 0;
+        long nanos = 0;
+        for (int i = 0; i < measureIterations; i++) {
+            long[] r = iteration(op);
+            ops += r[0];
+            nanos += r[1];
+        }
+        double nsPerOp = (double) nanos / Math.max(1, ops);
+        Result result = new Result(name, nsPerOp, 1e9 / nsPerOp, ops);
+        results.add(result);
+        System.out.println(format(result));
+    }
+
+    // {ops, elapsed nanos}
+    private long[] iteration(Op op) throws Exception {
+        long ops = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            consume(op.run());
+            ops++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < iterationNanos);
+        return new long[] { ops, elapsed };
+    }
+
+    private void consume(Object o) {
+        sink += (o == null) ? 0 : System.identityHashCode(o);
+    }
+
+    public List<Result> results() {
+        return results;
+    }
+
+    public static String format(Result r) {
+        return String.format(Locale.ROOT, "%-48s %14.1f us/op %12.1f ops/s  (%d ops)",
+                r.name(), r.nsPerOp() / 1000.0, r.opsPerSec(), r.ops());
+    }
+
+    @Override
+    public String toString() {
+        return "Bench{warmup=" + warmupIterations + ", iterations=" + measureIterations
+                + ", sink=" + sink + "}";
+    }
+}
@@ -0,0 +1,65 @@
+package bench;
+
+import domain.Route;
+import infra.TrainNetwork;
+import java.util.ArrayList;
+import java.util.List;
+import search.SearchQuery;
+import search.SearchService;
+
+// micro-benchmark: routes-from-city lookups, old full scan vs the index built at load.
+// One op = expanding every city once, like the indirect search does per frontier node.
+// Usage: java -cp "out:lib/*" bench.RouteIndexBench [--scale 1] [--warmup 3] [--iterations 5]
+public class RouteIndexBench {
+
+    public static void main(String[] args) throws Exception {
+        Bench bench = Bench.fromArgs(args);
+        int scale = Integer.parseInt(Bench.option(args, "--scale", "1"));
+        TrainNetwork net = new TrainNetwork();
+        net.load(SyntheticNetworks.scaled(SyntheticNetworks.BASE_CSV, scale).toString());
+
+        List<String> cities = new ArrayList<>();
+        for (int c = 0; c < net.getCityCount(); c++) {
+            cities.add(net.cityName(c));
+        }
+        System.out.println("Routes: " + net.getAllRoutes().size() + ", cities: " + cities.size());
+
+        bench.run("full scan per search", () -> scanAll(net, cities));
+        bench.run("indexed per search", () -> indexed(net, cities));
+        bench.run("SearchService.direct per city sweep", () -> direct(net, cities));
+    }
+
+    // what getRoutesFrom used to do: walk every route and compare names
+    private static int scanAll(TrainNetwork net, List<String> cities) {
+        int found = 0;
+        for (String city : cities) {
+            List<Route> out = new ArrayList<>();
+            for (Route r : net.getAllRoutes()) {
+                if (r.getDepartureCity() != null && r.getDepartureCity().equalsIgnoreCase(city)) {
+                    out.add(r);
+                }
+            }
+            found += out.size();
+        }
+        return found;
+    }
+
+    private static int indexed(TrainNetwork net, List<String> cities) {
+        int found = 0;
+        for (String city : cities) {
+            found += net.getRoutesFrom(city).size();
+        }
+        return found;
+    }
+
+    private static int direct(TrainNetwork net, List<String> cities) {
+        int found = 0;
+        for (String city : cities) {
+            SearchQuery q = new SearchQuery(city, null, null, null, null, null, null, null,
+                    "ANY", null, "DURATION", "ASC");
+            q.normalize();
+            found += SearchService.direct(net, q).size();
+        }
+        return found;
+    }
+}
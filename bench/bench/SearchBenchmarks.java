@@ -0,0 +1,236 @@
+package bench;
+
+import domain.Route;
+import infra.CsvLoader;
+import infra.TrainNetwork;
+import infra.TransferGraph;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import search.ArriveBySearchService;
+import search.BatchSearchService;
+import search.CompiledQuery;
+import search.DatedSearchService;
+import search.IndirectSearchService;
+import search.ParallelSearchService;
+import search.ProfileSearchService;
+import search.RouteFilters;
+import search.SearchCache;
+import search.SearchQuery;
+import search.SearchService;
+import search.TopKSearchService;
+import search.TransferPatternIndex;
+import search.TransferPatternSearchService;
+
+// Benchmark suite for loading, filtering and searching, on networks scaled from the base CSV.
+// Usage: java -cp "out:lib/*" bench.SearchBenchmarks [--scales 1,10,100] [--engine CSA|BFS|PARETO|ASTAR]
+//        [--warmup 3] [--iterations 5] [--time 500] [--filter find]
+public class SearchBenchmarks {
+
+    private static final int QUERY_PAIRS = 64;
+    private static final int BATCH_ORIGINS = 16;
+    private static final int BATCH_DESTINATIONS = 32;
+    private static final int PATTERN_INDEX_MAX_CITIES = 5_000;
+    private static final long SEED = 42L;
+
+    public static void main(String[] args) throws Exception {
+        Bench bench = Bench.fromArgs(args);
+        String[] scales = Bench.option(args, "--scales", "1,10,100").split(",");
+        IndirectSearchService.setEngine(IndirectSearchService.Engine.valueOf(
+                Bench.option(args, "--engine", IndirectSearchService.getEngine().name())));
+        System.out.println("Engine: " + IndirectSearchService.getEngine() + ", " + bench);
+
+        for (String s : scales) {
+            int scale = Integer.parseInt(s.trim());
+            Path csv = SyntheticNetworks.scaled(SyntheticNetworks.BASE_CSV, scale);
+            String path = csv.toString();
+
+            TrainNetwork net = new TrainNetwork();
+            net.load(path);
+            System.out.println();
+            System.out.println("== scale " + scale + "x: " + net.getCityCount() + " cities, "
+                    + net.getConnectionCount() + " connections ==");
+
+            String tag = "[" + scale + "x] ";
+            // memory budget of the search indexes; the transfer graph is built on first use
+            long buildStart = System.nanoTime();
+            TransferGraph transferGraph = net.getTransferGraph();
+            long buildMs = (System.nanoTime() - buildStart) / 1_000_000;
+            System.out.println(tag + "index memory: network " + net.indexMemoryBytes() / 1024 + " KiB, CityBounds "
+                    + net.getCityBounds().memoryBytes() / 1024 + " KiB, TransferGraph "
+                    + transferGraph.memoryBytes() / 1024 + " KiB (" + transferGraph.edgeCount()
+                    + " changes, built in " + buildMs + " ms)");
+            bench.run(tag + "CsvLoader.load", () -> CsvLoader.load(path));
+            bench.run(tag + "TrainNetwork.load", () -> {
+                TrainNetwork n = new TrainNetwork();
+                n.load(path);
+                return n;
+            });
+            bench.run(tag + "CsvLoader.loadParallel", () -> CsvLoader.loadParallel(path));
+            bench.run(tag + "TrainNetwork.loadParallel", () -> {
+                TrainNetwork n = new TrainNetwork();
+                n.loadParallel(path);
+                return n;
+            });
+
+            List<SearchQuery> directQueries = directQueries(net);
+            int[] next = { 0 };
+            bench.run(tag + "SearchService.direct", () ->
+                    SearchService.direct(net, directQueries.get(next[0]++ % directQueries.size())));
+
+            List<SearchQuery> pairs = pairQueries(net);
+            for (int transfers = 0; transfers <= 3; transfers++) {
+                int t = transfers;
+                bench.run(tag + "IndirectSearchService.find transfers=" + t, () ->
+                        IndirectSearchService.find(net, pairs.get(next[0]++ % pairs.size()), t, 20));
+            }
+            // BFS engine, first-leg branches on 1/2/4/8 fork-join threads
+            for (int threads : new int[] { 1, 2, 4, 8 }) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                try {
+                    bench.run(tag + "ParallelSearchService.find transfers=3 threads=" + threads, () ->
+                            ParallelSearchService.find(pool, net, pairs.get(next[0]++ % pairs.size()), 3, 20));
+                } finally {
+                    pool.shutdown();
+                }
+            }
+            // throughput: queries/s is ops/s times the batch size
+            List<SearchQuery> batch = batchQueries(net);
+            String perOp = " (" + batch.size() + " queries/op)";
+            bench.run(tag + "findBreadthFirst one by one" + perOp, () -> {
+                int n = 0;
+                for (SearchQuery q : batch) n += IndirectSearchService.findBreadthFirst(net, q, 2, 20).size();
+                return n;
+            });
+            bench.run(tag + "BatchSearchService.find" + perOp, () ->
+                    BatchSearchService.find(net, batch, 2, 20));
+            ForkJoinPool batchPool = new ForkJoinPool(4);
+            try {
+                bench.run(tag + "BatchSearchService.find threads=4" + perOp, () ->
+                        BatchSearchService.find(net, batch, 2, 20, batchPool));
+            } finally {
+                batchPool.shutdown();
+            }
+            // precomputed transfer patterns against a graph search, on pairs that do connect;
+            // building the index takes a backward pass per city, so large networks are left out
+            String patterns = tag + "TransferPatternSearchService.find transfers=2";
+            if (net.getCityCount() <= PATTERN_INDEX_MAX_CITIES && bench.accepts(patterns)) {
+                long t0 = System.nanoTime();
+                TransferPatternIndex index = TransferPatternIndex.build(net, 2);
+                System.out.println(tag + "TransferPatternIndex.build: " + index.pairCount() + " pairs, "
+                        + index.patternCount() + " patterns, " + index.memoryBytes() / 1024 + " KiB in "
+                        + (System.nanoTime() - t0) / 1_000_000 + " ms");
+                bench.run(patterns, () ->
+                        TransferPatternSearchService.find(index, net, batch.get(next[0]++ % batch.size()), 2, 20));
+                bench.run(tag + "IndirectSearchService.find transfers=2 (same pairs)", () ->
+                        IndirectSearchService.find(net, batch.get(next[0]++ % batch.size()), 2, 20));
+            }
+            bench.run(tag + "TopKSearchService.find k=20 transfers=2", () ->
+                    TopKSearchService.find(net, pairs.get(next[0]++ % pairs.size()), 2, 20));
+            bench.run(tag + "TopKSearchService.stream first result transfers=2", () ->
+                    TopKSearchService.stream(net, pairs.get(next[0]++ % pairs.size()), 2, 20).findFirst());
+            // same scan, on a travel date: connections are checked against the per-day service bitsets
+            LocalDate travelDate = LocalDate.of(2025, 6, 2);
+            bench.run(tag + "DatedSearchService.find transfers=2", () ->
+                    DatedSearchService.find(net, pairs.get(next[0]++ % pairs.size()), travelDate, 2, 20));
+            // every departure worth taking between 06:00 and 14:00, pairs that do connect
+            List<SearchQuery> windows = new ArrayList<>();
+            for (SearchQuery q : batch) {
+                SearchQuery w = new SearchQuery(q.getFromCity(), q.getToCity(), "06:00", "14:00", null, null, null, null,
+                        "ANY", null, "DURATION", "ASC");
+                w.normalize();
+                windows.add(w);
+            }
+            bench.run(tag + "ProfileSearchService.find 06:00-14:00 transfers=2", () ->
+                    ProfileSearchService.find(net, windows.get(next[0]++ % windows.size()), 2));
+            // latest departures arriving by 18:00, searched backwards from the destination
+            List<SearchQuery> deadlines = new ArrayList<>();
+            for (SearchQuery q : batch) {
+                SearchQuery d = new SearchQuery(q.getFromCity(), q.getToCity(), null, null, null, "18:00", null, null,
+                        "ANY", null, "DURATION", "ASC");
+                d.normalize();
+                deadlines.add(d);
+            }
+            bench.run(tag + "ArriveBySearchService.find by 18:00 transfers=2", () ->
+                    ArriveBySearchService.find(net, deadlines.get(next[0]++ % deadlines.size()), 2, 20));
+            // same pairs again, every one fits in the cache
+            SearchCache cache = new SearchCache(QUERY_PAIRS * 2, Duration.ofMinutes(10));
+            bench.run(tag + "SearchCache.find transfers=2 (repeated pairs)", () ->
+                    cache.find(net, pairs.get(next[0]++ % pairs.size()), 2, 20));
+
+            SearchQuery filter = new SearchQuery(null, null, "08:00", "20:00", null, null, null,
+                    Set.of("MON", "FRI"), "SECOND", 150, "DURATION", "ASC");
+            filter.normalize();
+            List<Route> routes = net.getAllRoutes();
+            bench.run(tag + "RouteFilters.matches (all routes)", () -> {
+                int hits = 0;
+                for (Route r : routes) {
+                    if (RouteFilters.matches(filter, r)) hits++;
+                }
+                return hits;
+            });
+            bench.run(tag + "CompiledQuery.matches (all routes)", () -> {
+                CompiledQuery compiled = CompiledQuery.of(filter);
+                int hits = 0;
+                for (Route r : routes) {
+                    if (compiled.matches(r)) hits++;
+                }
+                return hits;
+            });
+        }
+    }
+
+    // departures from a fixed random sample of cities
+    private static List<SearchQuery> directQueries(TrainNetwork net) {
+        Random rnd = new Random(SEED);
+        List<SearchQuery> out = new ArrayList<>();
+        for (int i = 0; i < QUERY_PAIRS; i++) {
+            out.add(query(net.cityName(rnd.nextInt(net.getCityCount())), null));
+        }
+        return out;
+    }
+
+    // random city pairs, the same ones on every run
+    private static List<SearchQuery> pairQueries(TrainNetwork net) {
+        Random rnd = new Random(SEED);
+        List<SearchQuery> out = new ArrayList<>();
+        while (out.size() < QUERY_PAIRS) {
+            int from = rnd.nextInt(net.getCityCount());
+            int to = rnd.nextInt(net.getCityCount());
+            if (from != to) out.add(query(net.cityName(from), net.cityName(to)));
+        }
+        return out;
+    }
+
+    // a few origins, each with destinations one to three random hops away, as a pricing job would ask
+    private static List<SearchQuery> batchQueries(TrainNetwork net) {
+        Random rnd = new Random(SEED);
+        List<SearchQuery> out = new ArrayList<>();
+        for (int o = 0; o < BATCH_ORIGINS; o++) {
+            int from = rnd.nextInt(net.getCityCount());
+            for (int d = 0; d < BATCH_DESTINATIONS; d++) {
+                int city = from;
+                for (int hops = 1 + rnd.nextInt(3); hops > 0; hops--) {
+                    int n = net.departuresEnd(city) - net.departuresStart(city);
+                    if (n == 0) break;
+                    city = net.arrivalCityOf(net.departureEdge(net.departuresStart(city) + rnd.nextInt(n)));
+                }
+                if (city != from) out.add(query(net.cityName(from), net.cityName(city)));
+            }
+        }
+        return out;
+    }
+
+    private static SearchQuery query(String from, String to) {
+        SearchQuery q = new SearchQuery(from, to, null, null, null, null, null, null,
+                "ANY", null, "DURATION", "ASC");
+        q.normalize();
+        q.validate();
+        return q;
+    }
+}
@@ -0,0 +1,86 @@
+package bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// Builds bigger timetables out of resources/eu_rail_network.csv.
+// Scale k writes k copies of every row: copy i renames every city to "City #i" and
+// route ids to "R00003#i". Every tenth row of a copy arrives in the next copy instead,
+// so the copies form one connected network with k times the cities and connections.
+public final class SyntheticNetworks {
+
+    public static final String BASE_CSV = "./resources/eu_rail_network.csv";
+
+    private SyntheticNetworks() {
+    }
+
+    // writes the scaled network to a temp file (deleted on exit) and returns its path
+    public static Path scaled(String baseCsv, int scale) throws IOException {
+        List<String> lines = Files.readAllLines(Path.of(baseCsv), StandardCharsets.UTF_8);
+        Path out = Files.createTempFile("rail-x" + scale + "-", ".csv");
+        out.toFile().deleteOnExit();
+
+        try (BufferedWriter w = Files.newBufferedWriter(out, StandardCharsets.UTF_8)) {
+            w.write(lines.get(0));
+            w.newLine();
+            for (int copy = 0; copy < scale; copy++) {
+                int next = (copy + 1) % scale;
+                for (int row = 1; row < lines.size(); row++) {
+                    String line = lines.get(row);
+                    if (line.isBlank()) continue;
+                    List<String> cells = split(line);
+                    // columns: id, departure city, arrival city, ...
+                    cells.set(0, rename(cells.get(0), copy));
+                    cells.set(1, rename(cells.get(1), copy));
+                    cells.set(2, rename(cells.get(2), (row % 10 == 0) ? next : copy));
+                    w.write(join(cells));
+                    w.newLine();
+                }
+            }
+        }
+        return out;
+    }
+
+    // copy 0 keeps the original names, so 1x is exactly the source file
+    private static String rename(String value, int copy) {
+        return copy == 0 ? value : value + " #" + copy;
+    }
+
+    private static List<String> split(String line) {
+        List<String> out = new ArrayList<>();
+        StringBuilder cell = new StringBuilder();
+        boolean inQuotes = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                inQuotes = !inQuotes;
+            } else if (c == ',' && !inQuotes) {
+                out.add(cell.toString());
+                cell.setLength(0);
+            } else {
+                cell.append(c);
+            }
+        }
+        out.add(cell.toString());
+        return out;
+    }
+
+    private static String join(List<String> cells) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < cells.size(); i++) {
+            if (i > 0) sb.append(',');
+            String c = cells.get(i);
+            if (c.indexOf(',') >= 0 || c.indexOf('"') >= 0) {
+                sb.append('"').append(c.replace("\"", "\"\"")).append('"');
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -3,6 +3,7 @@ package app;
 import domain.*;
 import infra.*;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.util.*;
 import search.*;
@@ -22,8 +23,11 @@ public class AppCLI {
     //         clientRepo, tripRepo, reservationRepo, ticketRepo
     // );
 
-    private static final TrainNetwork net = new TrainNetwork();
+    // active timetable, reloaded in the background when the CSV changes
+    private static LiveTrainNetwork network = null;
     private static boolean dataLoaded = false;
+    // repeated searches are served from here until the timetable version changes
+    private static final SearchCache searchCache = new SearchCache();
 
     private static Client currentClient = null;
     private static Itinerary lastItinerary = null;
@@ -109,10 +113,6 @@ public class AppCLI {
 
     //Option 1: loadNetwork
     private static void loadNetwork() {
-        if (dataLoaded) {
-            System.out.println("Network already loaded.");
-            return;
-        }
         System.out.print("CSV path [default ./resources/eu_rail_network.csv]: ");
         String path = sc.nextLine().trim();
         if (path.isBlank()) {
@@ -120,10 +120,25 @@ public class AppCLI {
         }
 
         try {
-            net.load(path);
+            Path csv = Path.of(path);
+            // the same CSV is reloaded in place; another one replaces the old network and its watcher
+            boolean sameCsv = network != null
+                    && network.getCsvPath().toAbsolutePath().normalize().equals(csv.toAbsolutePath().normalize());
+            LiveTrainNetwork live = sameCsv ? network : new LiveTrainNetwork(csv, NetworkSnapshot.defaultPathFor(csv));
+            TrainNetwork net = live.reload();
+            if (!sameCsv && network != null) {
+                network.close();
+            }
+            live.watch();
+            network = live;
             dataLoaded = true;
-            System.out.println("Loaded " + net.getAllConnections().size() + " connections.");
+            System.out.println("Loaded " + net.getAllConnections().size() + " connections"
+                    + " in " + live.stats().lastReloadMillis() + " ms.");
             System.out.println("Unique routes: " + net.getAllRoutes().size());
+            TransferGraph transfers = net.getTransferGraph();
+            System.out.println("Transfer graph: " + transfers.edgeCount() + " allowed changes ("
+                    + transfers.memoryBytes() / 1024 + " KiB).");
+            System.out.println("Watching " + path + " for changes.");
         } catch (IOException e) {
             System.out.println("Failed to load: " + e.getMessage());
         }
@@ -167,11 +182,22 @@ public class AppCLI {
             String from = sc.nextLine();
             System.out.print("Destination city: ");
             String to = sc.nextLine();
+            System.out.print("Leave between HH:MM-HH:MM (blank for any time): ");
+            String window = sc.nextLine().trim();
+            String[] leave = window.isEmpty() ? new String[] { null, null } : window.split("-", 2);
+            if (leave.length < 2) {
+                System.out.println("Bad search: departure window must look like 06:00-14:00");
+                System.out.println("Please try again.\n");
+                continue;
+            }
+            for (int i = 0; i < leave.length; i++) {
+                if (leave[i] != null) leave[i] = leave[i].trim();
+            }
 
             q = new SearchQuery(
                     from,
                     to,
-                    null, null,
+                    leave[0], leave[1],
                     null, null,
                     null,
                     null,
@@ -190,19 +216,39 @@ public class AppCLI {
             }
         }
 
-        List<Itinerary> list = IndirectSearchService.find(net, q, 2, 20);
-        if (list.isEmpty()) {
-            System.out.println("No options found.");
-            return;
+        // travel date first, only trains running on the days they are taken are offered
+        LocalDate tripDate = null;
+        while (tripDate == null) {
+            System.out.print("Enter Trip date (YYYY-MM-DD): ");
+            String dateRaw = sc.nextLine().trim();
+            try {
+                tripDate = java.time.LocalDate.parse(dateRaw);
+            } catch (Exception e) {
+                System.out.println("Invalid date format. Please try again");
+            }
         }
 
-        System.out.println("Found " + list.size() + " itineraries:");
-        System.out.println("NOTE Layover policy: daytime layovers ≤ 2h, night-time ≤ 30 min.");
-        for (int i = 0; i < list.size(); i++) {
-            System.out.print(i + 1 + ".");
-            System.out.println(list.get(i));
+        // with a window: every departure in it worth taking, from a profile search; otherwise the
+        // best 20 in sort order, each printed as soon as the search has it
+        List<Itinerary> list = new ArrayList<>();
+        Iterator<Itinerary> results = q.getDepStart() != null
+                ? ProfileSearchService.find(network.current(), q, tripDate, 2).iterator()
+                : searchCache.stream(network.current(), q, tripDate, 2, 20).iterator();
+        while (results.hasNext()) {
+            Itinerary it = results.next();
+            if (list.isEmpty()) {
+                System.out.println("NOTE Layover policy: daytime layovers ≤ 2h, night-time ≤ 30 min.");
+            }
+            list.add(it);
+            System.out.print(list.size() + ".");
+            System.out.println(it);
             System.out.println();
         }
+        if (list.isEmpty()) {
+            System.out.println("No options found on " + tripDate + ".");
+            return;
+        }
+        System.out.println("Found " + list.size() + " itineraries on " + tripDate + ".");
 
         int chosenIdx = -1;
         while (true) {
@@ -222,18 +268,7 @@ public class AppCLI {
         lastItinerary = list.get(chosenIdx);
         System.out.println("Selected itinerary " + (chosenIdx + 1));
 
-        //trip info (date, fare class, passenger count)
-        LocalDate tripDate = null;
-        while (tripDate == null) {
-            System.out.print("Enter Trip date (YYYY-MM-DD): ");
-            String dateRaw = sc.nextLine().trim();
-            try {
-                tripDate = java.time.LocalDate.parse(dateRaw);
-            } catch (Exception e) {
-                System.out.println("Invalid date format. Please try again");
-            }
-        }
-
+        //trip info (fare class, passenger count)
         Trip.FareClass tripFareClass = null;
         while (tripFareClass == null) {
             System.out.print("Select fare class for the trip FIRST/SECOND: ");
@@ -441,6 +476,16 @@ public class AppCLI {
 
     //Option 5: summary
     private static void showSessionSummary() {
+        if (network != null) {
+            LiveTrainNetwork.ReloadStats st = network.stats();
+            System.out.println("Timetable version:   " + st.activeVersion() + " (" + st.activeConnections()
+                    + " connections, " + st.reloads() + " loads, last took " + st.lastReloadMillis() + " ms"
+                    + (st.lastError() == null ? "" : ", last reload failed: " + st.lastError()) + ")");
+        }
+        SearchCache.Stats cs = searchCache.stats();
+        System.out.println("Search cache:        " + cs.size() + "/" + cs.maxEntries() + " entries, "
+                + cs.hits() + " hits, " + cs.misses() + " misses, " + cs.evictions() + " evicted, "
+                + cs.expirations() + " expired");
         System.out.println("Current client:      "
                 + (currentClient == null
                         ? "(none)"
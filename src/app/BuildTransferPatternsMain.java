@@ -0,0 +1,43 @@
+package app;
+
+import infra.TrainNetwork;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import search.TransferPatternIndex;
+
+// Precomputes the transfer pattern index of a timetable and writes it next to the data.
+// Example:
+//   java -cp "out:lib/*" app.BuildTransferPatternsMain --csv ./resources/eu_rail_network.csv --transfers 2
+public class BuildTransferPatternsMain {
+
+    public static void main(String[] args) throws Exception {
+        Path csv = Path.of(option(args, "--csv", "./resources/eu_rail_network.csv"));
+        Path out = Path.of(option(args, "--out", "./data/" + csv.getFileName() + ".patterns"));
+        int transfers = Integer.parseInt(option(args, "--transfers", "2"));
+        int threads = Integer.parseInt(option(args, "--threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+
+        TrainNetwork net = new TrainNetwork();
+        net.load(csv.toString());
+
+        long start = System.currentTimeMillis();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        TransferPatternIndex index;
+        try {
+            index = TransferPatternIndex.build(net, transfers, pool);
+        } finally {
+            pool.shutdown();
+        }
+        index.write(out);
+        System.out.println("Indexed " + index.pairCount() + " city pairs, " + index.patternCount() + " patterns"
+                + " (up to " + transfers + " transfers, " + index.memoryBytes() / 1024 + " KiB) in "
+                + (System.currentTimeMillis() - start) + " ms on " + threads + " threads, wrote " + out);
+    }
+
+    private static String option(String[] args, String name, String def) {
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (args[i].equals(name)) return args[i + 1];
+        }
+        return def;
+    }
+}
@@ -0,0 +1,77 @@
+package app;
+
+import infra.RepositoryFactory;
+import infra.RepositoryFactory.Mode;
+import infra.TrainNetwork;
+import infra.gen.BookingLoadSeeder;
+import infra.gen.TimetableGenerator;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Set;
+import java.util.TreeSet;
+
+// Writes a synthetic timetable CSV and, optionally, seeds booking data into SQLite.
+// Example:
+//   java -cp "out:lib/*" app.GenerateTimetableMain --out ./data/gen_50k.csv --cities 50000 --seed 7 --clients 200
+public class GenerateTimetableMain {
+
+    private static final Set<String> OPTIONS = Set.of("--out", "--seed", "--cities", "--hub-share",
+            "--hub-degree", "--spoke-degree", "--overnight", "--clients", "--trips-per-client",
+            "--max-passengers", "--booking-date");
+
+    public static void main(String[] args) throws Exception {
+        checkOptions(args);
+        Path out = Path.of(option(args, "--out", "./data/generated_network.csv"));
+        long seed = Long.parseLong(option(args, "--seed", "42"));
+
+        TimetableGenerator gen = new TimetableGenerator(seed)
+                .setCityCount(Integer.parseInt(option(args, "--cities", "250")))
+                .setHubShare(Double.parseDouble(option(args, "--hub-share", "0.05")))
+                .setHubDegree(Integer.parseInt(option(args, "--hub-degree", "40")))
+                .setSpokeDegree(Integer.parseInt(option(args, "--spoke-degree", "4")))
+                .setOvernightShare(Double.parseDouble(option(args, "--overnight", "0.05")));
+
+        long start = System.currentTimeMillis();
+        long rows = gen.writeCsv(out);
+        System.out.println("Wrote " + rows + " connections (" + gen.hubCount() + " hubs) to " + out
+                + " in " + (System.currentTimeMillis() - start) + " ms");
+
+        int clients = Integer.parseInt(option(args, "--clients", "0"));
+        if (clients > 0) {
+            TrainNetwork net = new TrainNetwork();
+            net.load(out.toString());
+
+            RepositoryFactory.ensureSchema(Mode.SQLITE);
+            BookingLoadSeeder seeder = new BookingLoadSeeder(
+                    RepositoryFactory.clients(Mode.SQLITE),
+                    RepositoryFactory.trips(Mode.SQLITE),
+                    RepositoryFactory.reservations(Mode.SQLITE));
+            LocalDate bookingDate = LocalDate.parse(option(args, "--booking-date",
+                    BookingLoadSeeder.DEFAULT_BOOKING_DATE.toString()));
+            int reservations = seeder.seed(net, seed, bookingDate,
+                    clients,
+                    Integer.parseInt(option(args, "--trips-per-client", "3")),
+                    Integer.parseInt(option(args, "--max-passengers", "4")));
+            System.out.println("Seeded " + clients + " clients and " + reservations + " reservations into SQLite.");
+        }
+    }
+
+    // a misspelt option would otherwise quietly give the default network
+    private static void checkOptions(String[] args) {
+        for (int i = 0; i < args.length; i += 2) {
+            if (!OPTIONS.contains(args[i])) {
+                throw new IllegalArgumentException("Unknown option " + args[i] + ", expected one of " + new TreeSet<>(OPTIONS));
+            }
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Option " + args[i] + " needs a value");
+            }
+        }
+    }
+
+    private static String option(String[] args, String name, String def) {
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (args[i].equals(name)) return args[i + 1];
+        }
+        return def;
+    }
+}
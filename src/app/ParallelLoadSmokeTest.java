@@ -0,0 +1,105 @@
+package app;
+
+import domain.Route;
+import domain.TrainConnection;
+import infra.CsvLoader;
+import infra.TrainNetwork;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+// Checks that the parallel load gives exactly the same network as the sequential one.
+// Usage: java -cp "out:lib/*" app.ParallelLoadSmokeTest [csv ...]   (default: the bundled timetable)
+public class ParallelLoadSmokeTest {
+
+    public static void main(String[] args) throws Exception {
+        String[] files = args.length > 0 ? args : new String[] { "./resources/eu_rail_network.csv" };
+        int failures = 0;
+        for (String file : files) {
+            for (int threads : new int[] { 1, 2, 4, 8 }) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                try {
+                    failures += check(file, pool);
+                } finally {
+                    pool.shutdown();
+                }
+            }
+        }
+        if (failures > 0) {
+            System.out.println("FAILED: " + failures + " mismatch(es)");
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    private static int check(String file, ForkJoinPool pool) throws Exception {
+        String tag = file + " [" + pool.getParallelism() + " threads]";
+        List<String> mismatches = new ArrayList<>();
+
+        // rows and error callbacks, in order
+        List<String> seqErrors = new ArrayList<>();
+        List<String> parErrors = new ArrayList<>();
+        List<TrainConnection> seqRows = CsvLoader.load(file, (n, line, e) -> seqErrors.add(n + ":" + line));
+        List<TrainConnection> parRows = CsvLoader.loadParallel(file, (n, line, e) -> parErrors.add(n + ":" + line), pool);
+        compare(mismatches, "rows", describeConnections(seqRows), describeConnections(parRows));
+        compare(mismatches, "errors", seqErrors, parErrors);
+
+        // indexes
+        TrainNetwork seq = new TrainNetwork();
+        seq.load(file);
+        TrainNetwork par = new TrainNetwork();
+        par.loadParallel(file, pool);
+        compare(mismatches, "connections by departure time",
+                describeConnections(seq.getConnectionsByDepartureTime()),
+                describeConnections(par.getConnectionsByDepartureTime()));
+        compare(mismatches, "all routes", describeRoutes(seq.getAllRoutes()), describeRoutes(par.getAllRoutes()));
+        compare(mismatches, "city count", List.of(seq.getCityCount()), List.of(par.getCityCount()));
+
+        for (int c = 0; c < seq.getCityCount() && mismatches.isEmpty(); c++) {
+            String city = seq.cityName(c);
+            compare(mismatches, "city id " + city, List.of(c), List.of(par.cityId(city)));
+            compare(mismatches, "routes from " + city,
+                    describeRoutes(seq.getRoutesFrom(city)), describeRoutes(par.getRoutesFrom(city)));
+            compare(mismatches, "departures from " + city,
+                    describeConnections(seq.getDeparturesFrom(city)), describeConnections(par.getDeparturesFrom(city)));
+            for (Route r : seq.getRoutesFrom(city)) {
+                compare(mismatches, "routes " + city + " -> " + r.getArrivalCity(),
+                        describeRoutes(seq.getRoutes(city, r.getArrivalCity())),
+                        describeRoutes(par.getRoutes(city, r.getArrivalCity())));
+            }
+        }
+        for (int id = 0; id < seq.getConnectionCount() && mismatches.isEmpty(); id++) {
+            compare(mismatches, "city ids of connection " + id,
+                    List.of(seq.departureCityOf(id), seq.arrivalCityOf(id)),
+                    List.of(par.departureCityOf(id), par.arrivalCityOf(id)));
+        }
+
+        System.out.println((mismatches.isEmpty() ? "  same  " : "  DIFF  ") + tag + ": "
+                + seqRows.size() + " rows, " + seqErrors.size() + " bad rows");
+        for (String m : mismatches) System.out.println("        " + m);
+        return mismatches.size();
+    }
+
+    private static void compare(List<String> mismatches, String what, List<?> expected, List<?> actual) {
+        if (!expected.equals(actual)) {
+            mismatches.add(what + ": expected " + expected.size() + " entries, got " + actual.size()
+                    + (expected.size() == actual.size() ? " (contents differ)" : ""));
+        }
+    }
+
+    private static List<String> describeConnections(List<TrainConnection> list) {
+        List<String> out = new ArrayList<>(list.size());
+        for (TrainConnection c : list) out.add(c.getRouteID() + " " + c);
+        return out;
+    }
+
+    private static List<String> describeRoutes(List<Route> list) {
+        List<String> out = new ArrayList<>(list.size());
+        for (Route r : list) {
+            out.add(r.getRouteId() + " " + r.getDepartureCity() + "->" + r.getArrivalCity() + " "
+                    + r.getDepartureTime() + "-" + r.getArrivalTime() + " " + r.getTrainType() + " "
+                    + r.getDaysSet() + " " + r.getFirstClassPrice() + "/" + r.getSecondClassPrice());
+        }
+        return out;
+    }
+}
@@ -26,10 +26,10 @@ public class BookingPolicies {
         }
 
         //layover duration between arrival of first and departure of next
-        int gap = TimeUtil.diff(first.getArrivalTime(), next.getDepartureTime());
-
         //Time of day at arrival of the first leg (in minutes since midnight)
-        int arrMinutes = TimeUtil.minutes(first.getArrivalTime());
+        int arrMinutes = first.getArrivalMinuteOfDay();
+
+        int gap = TimeUtil.diff(arrMinutes, next.getDepartureMinuteOfDay());
 
         boolean isNight
                 = (arrMinutes < DAY_START_MIN) //before 06:00
@@ -40,6 +40,19 @@ public class BookingPolicies {
         return gap <= maxAllowed;
     }
 
+    //longest layover any time window allows (used to bound searches)
+    public static int maxLayoverMinutes() {
+        return Math.max(MAX_LAYOVER_DAY_MIN, MAX_LAYOVER_NIGHT_MIN);
+    }
+
+    //longest total duration isOkComparedToDirect accepts, MAX_VALUE when there is no direct route
+    public static int maxTotalMinutes(Integer directDurationMinutes) {
+        if (directDurationMinutes == null || directDurationMinutes == Integer.MAX_VALUE) {
+            return Integer.MAX_VALUE;
+        }
+        return directDurationMinutes + MAX_EXTRA_VS_DIRECT_MIN;
+    }
+
     public static boolean isOkComparedToDirect(Itinerary it, Integer directDurationMinutes) {
         if (it == null) {
             return false;
@@ -0,0 +1,84 @@
+package domain;
+
+import java.time.DayOfWeek;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+
+// utility class for days of operation stored as a 7-bit mask
+// bit 0 is Monday, bit 6 is Sunday, so two schedules overlap when (a & b) != 0
+
+public final class DayMask {
+
+    public static final int NONE = 0;
+    public static final int ALL = 0x7F;
+
+    // "MON".."SUN", index = bit
+    private static final String[] CODES = {"MON", "TUE", "WED", "THU", "FRI", "SAT", "SUN"};
+    // letters of the "MTWTFSS" pattern used by Route, '-' where the day is off
+    private static final char[] LETTERS = {'M', 'T', 'W', 'T', 'F', 'S', 'S'};
+
+    // prevent instantiation
+    private DayMask() {}
+
+    public static int bit(DayOfWeek d) {
+        return 1 << (d.getValue() - 1);
+    }
+
+    public static int of(Set<DayOfWeek> days) {
+        int mask = NONE;
+        if (days != null) {
+            for (DayOfWeek d : days) mask |= bit(d);
+        }
+        return mask;
+    }
+
+    // new mutable set with the days of the mask
+    public static Set<DayOfWeek> toSet(int mask) {
+        Set<DayOfWeek> set = EnumSet.noneOf(DayOfWeek.class);
+        for (DayOfWeek d : DayOfWeek.values()) {
+            if ((mask & bit(d)) != 0) set.add(d);
+        }
+        return set;
+    }
+
+    // "MTWTFSS" / "MTWTF--" -> mask; a position counts when it holds that day's letter
+    public static int fromPattern(String pattern) {
+        int mask = NONE;
+        if (pattern == null) return mask;
+        for (int i = 0; i < Math.min(pattern.length(), 7); i++) {
+            if (pattern.charAt(i) == LETTERS[i]) mask |= 1 << i;
+        }
+        return mask;
+    }
+
+    public static String toPattern(int mask) {
+        char[] out = new char[7];
+        for (int i = 0; i < 7; i++) out[i] = (mask & (1 << i)) != 0 ? LETTERS[i] : '-';
+        return new String(out);
+    }
+
+    // {"MON","Tuesday",...} -> mask; only the first three letters matter, unknown codes are ignored
+    public static int fromCodes(Set<String> codes) {
+        int mask = NONE;
+        if (codes == null) return mask;
+        for (String c : codes) {
+            if (c == null) continue;
+            String s = c.trim().toUpperCase(Locale.ROOT);
+            if (s.length() > 3) s = s.substring(0, 3);
+            for (int i = 0; i < 7; i++) {
+                if (CODES[i].equals(s)) mask |= 1 << i;
+            }
+        }
+        return mask;
+    }
+
+    // mask -> {"MON",...} in week order
+    public static Set<String> toCodes(int mask) {
+        Set<String> set = new java.util.LinkedHashSet<>();
+        for (int i = 0; i < 7; i++) {
+            if ((mask & (1 << i)) != 0) set.add(CODES[i]);
+        }
+        return set;
+    }
+}
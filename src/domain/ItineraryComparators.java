@@ -30,13 +30,6 @@ public final class ItineraryComparators {
     public static final Comparator<Itinerary> BY_ARRIVAL_TIME = Comparator.comparingInt(it -> {
         if (it.getLegs().isEmpty()) return Integer.MAX_VALUE;
         Leg last = it.getLegs().get(it.getLegs().size() - 1);
-        return timeToMinutes(last.getRoute().getArrivalTime());
+        return last.getRoute().getArrivalMinuteOfDay();
     });
-
-    // helper to convert HH:mm to minutes since midnight
-    private static int timeToMinutes(String hhmm) {
-        if (hhmm == null || !hhmm.contains(":")) return 0;
-        String[] parts = hhmm.split(":");
-        return Integer.parseInt(parts[0]) * 60 + Integer.parseInt(parts[1]);
-    }
 }
\ No newline at end of file
@@ -1,7 +1,5 @@
 package domain;
 
-import java.time.*;
-
 public class Route {
     private String routeId;
     private String departureCity;
@@ -13,6 +11,13 @@ public class Route {
     private int firstClassPrice;
     private int secondClassPrice;
 
+    // parsed once from the strings above, the strings are kept for display
+    private final int departureMinute; // minute of day
+    private final int arrivalMinute;
+    private final int durationMinutes;
+    private final int daysMask; // DayMask bits of daysOfOperation
+    private final TrainType trainTypeKind; // trainType resolved once, UNKNOWN if unrecognized
+
     public Route(String routeId, String departureCity, String arrivalCity,
                  String departureTime, String arrivalTime, String trainType,
                  String daysOfOperation, int firstClassPrice, int secondClassPrice) {
@@ -25,6 +30,11 @@ public class Route {
         this.daysOfOperation = daysOfOperation;
         this.firstClassPrice = firstClassPrice;
         this.secondClassPrice = secondClassPrice;
+        this.departureMinute = TimeUtil.minutes(departureTime);
+        this.arrivalMinute = TimeUtil.minutes(arrivalTime);
+        this.durationMinutes = TimeUtil.diff(departureMinute, arrivalMinute);
+        this.daysMask = DayMask.fromPattern(this.daysOfOperation);
+        this.trainTypeKind = TrainType.fromString(trainType);
     }
 
     // convenience constructor used when loading routes from DB (no routeId/daysOfOperation)
@@ -41,6 +51,11 @@ public class Route {
         this.daysOfOperation = "MTWTFSS"; // default
         this.firstClassPrice = firstClassPrice;
         this.secondClassPrice = secondClassPrice;
+        this.departureMinute = TimeUtil.minutes(departureTime);
+        this.arrivalMinute = TimeUtil.minutes(arrivalTime);
+        this.durationMinutes = TimeUtil.diff(departureMinute, arrivalMinute);
+        this.daysMask = DayMask.fromPattern(this.daysOfOperation);
+        this.trainTypeKind = TrainType.fromString(trainType);
     }
 
     // -------- Getters --------
@@ -49,28 +64,21 @@ public class Route {
     public String getArrivalCity() { return arrivalCity; }
     public String getDepartureTime() { return departureTime; }
     public String getArrivalTime() { return arrivalTime; }
+    public int getDepartureMinuteOfDay() { return departureMinute; }
+    public int getArrivalMinuteOfDay() { return arrivalMinute; }
     public String getTrainType() { return trainType; }
+    public TrainType getTrainTypeKind() { return trainTypeKind; }
     public int getFirstClassPrice() { return firstClassPrice; }
     public int getSecondClassPrice() { return secondClassPrice; }
+    public int getDaysMask() { return daysMask; }
 
-    // Converts MTWTFSS to a set like MON,TUE,WED...
+    // Converts MTWTFSS to a set like MON,TUE,WED... (new set per call, filters use getDaysMask())
     public java.util.Set<String> getDaysSet() {
-        java.util.Set<String> result = new java.util.HashSet<>();
-        char[] map = {'M','T','W','T','F','S','S'};
-        String[] days = {"MON","TUE","WED","THU","FRI","SAT","SUN"};
-        for (int i=0; i<Math.min(daysOfOperation.length(),7); i++) {
-            char c = daysOfOperation.charAt(i);
-            if (c == map[i]) result.add(days[i]);
-        }
-        return result;
+        return DayMask.toCodes(daysMask);
     }
 
-    // Computes trip duration in minutes. Handles overnight trips. 
+    // Trip duration in minutes, computed at construction. Handles overnight trips.
     public int getDurationMinutes() {
-        LocalTime dep = LocalTime.parse(departureTime);
-        LocalTime arr = LocalTime.parse(arrivalTime);
-        int mins = (int) Duration.between(dep, arr).toMinutes();
-        if (mins < 0) mins += 24 * 60;
-        return mins;
+        return durationMinutes;
     }
 }
@@ -50,8 +50,11 @@ public final class TimeUtil {
 
     // difference in minutes (positive only)
     public static int diff(String t1, String t2) {
-        int m1 = minutes(t1);
-        int m2 = minutes(t2);
+        return diff(minutes(t1), minutes(t2));
+    }
+
+    // same as above on minutes since midnight
+    public static int diff(int m1, int m2) {
         int diff = m2 - m1;
         return diff >= 0 ? diff : diff + 24 * 60;
     }
@@ -16,6 +16,12 @@ public class TrainConnection {
     private final java.time.Duration tripDuration;
     public int arrivalDayOffset;
 
+    // minute-of-day and trip length as ints, fixed at construction
+    private final int departureMinute;
+    private final int arrivalMinute;
+    private final int tripMinutes;
+    private final int daysMask; // DayMask bits of daysOfOperation
+
 
     public TrainConnection(String routeID, String departureCity, String arrivalCity, LocalTime departureTime, LocalTime arrivalTime, TrainType traintype, Set<DayOfWeek> daysOfOperation, int firstClassRate, int secondClassRate, int arrivalDayOffset) {
         this.routeID = routeID;
@@ -40,6 +46,10 @@ public class TrainConnection {
         }
 
         this.tripDuration = d;
+        this.departureMinute = departureTime.getHour() * 60 + departureTime.getMinute();
+        this.arrivalMinute = arrivalTime.getHour() * 60 + arrivalTime.getMinute();
+        this.tripMinutes = (int) d.toMinutes();
+        this.daysMask = DayMask.of(daysOfOperation);
     }
 
     public String getRouteID() {
@@ -75,6 +85,21 @@ public class TrainConnection {
     public java.time.Duration getTripDuration() {
         return tripDuration;
     }
+    public int getDepartureMinuteOfDay() {
+        return departureMinute;
+    }
+    public int getArrivalMinuteOfDay() {
+        return arrivalMinute;
+    }
+    public int getTripMinutes() {
+        return tripMinutes;
+    }
+    public int getDaysMask() {
+        return daysMask;
+    }
+    public boolean runsOn(DayOfWeek day) {
+        return (daysMask & DayMask.bit(day)) != 0;
+    }
 
     private static String formatDuration(java.time.Duration d) {
         long minutes = d.toMinutes();
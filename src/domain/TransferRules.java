@@ -52,9 +52,9 @@ public final class TransferRules {
             // min required transfer time
             int minTransfer = computeMinTransfer(first, next);
 
-            // compare using the string times
-            int arr = timeToMinutes(first.getArrivalTime());
-            int dep = timeToMinutes(next.getDepartureTime());
+            // minutes since midnight, parsed once when the routes were built
+            int arr = first.getArrivalMinuteOfDay();
+            int dep = next.getDepartureMinuteOfDay();
 
             // handle overnight trips
             if (dep < arr) {
@@ -66,14 +66,4 @@ public final class TransferRules {
 
         return false;
     }
-
-    // helper to convert HH:mm to minutes since midnight
-    private static int timeToMinutes(String hhmm) {
-        if (hhmm == null || !hhmm.contains(":")) {
-            return 0;
-        }
-
-        String[] parts = hhmm.split(":");
-        return Integer.parseInt(parts[0]) * 60 + Integer.parseInt(parts[1]);
-    }
 }
\ No newline at end of file
@@ -0,0 +1,282 @@
+package infra;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Lower bounds between cities, for pruning searches.
+ *
+ * For a goal city, legs(c) is the fewest connections needed to get from c to the goal and
+ * minutes(c) the least travel time, summing each hop's shortest trip. Layovers, filters,
+ * schedules and the no-revisit rule are ignored, so real itineraries never beat these
+ * numbers. Cities that cannot reach the goal at all get UNREACHABLE for both.
+ *
+ * Rows are computed backwards from the goal over the reversed city graph. Networks with at
+ * most ALL_PAIRS_LIMIT cities get every row at load (the all-pairs tables); bigger ones
+ * compute a goal's row the first time it is asked for and keep the most recent rows.
+ * from(origin) is the same walked forwards, for searches that run backwards from the goal.
+ */
+public final class CityBounds {
+
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    static final int ALL_PAIRS_LIMIT = 1024;
+    private static final int CACHED_ROWS = 64;
+
+    private static final byte NO_LEGS = Byte.MAX_VALUE; // legs are stored as bytes, capped below this
+
+    private final int cityCount;
+    // reversed graph in CSR form: the connections arriving at city c are
+    // incomingFrom/incomingMinutes[incomingOffsets[c] .. incomingOffsets[c + 1])
+    private final int[] incomingOffsets;
+    private final int[] incomingFrom;
+    private final int[] incomingMinutes;
+    // and the city graph itself, the connections leaving c
+    private final int[] outgoingOffsets;
+    private final int[] outgoingTo;
+    private final int[] outgoingMinutes;
+
+    private final Goal[] allPairs;           // null when rows are computed on demand
+    private final Map<Integer, Goal> recent; // goal -> row, least recently used first
+    private final Map<Integer, Goal> recentFrom; // the same for from(origin)
+
+    CityBounds(int cityCount, int[] dep, int[] arr, int[] minutes) {
+        this.cityCount = cityCount;
+        int n = dep.length;
+        incomingOffsets = new int[cityCount + 1];
+        for (int i = 0; i < n; i++) incomingOffsets[arr[i] + 1]++;
+        for (int c = 0; c < cityCount; c++) incomingOffsets[c + 1] += incomingOffsets[c];
+        incomingFrom = new int[n];
+        incomingMinutes = new int[n];
+        int[] fill = Arrays.copyOf(incomingOffsets, cityCount);
+        for (int i = 0; i < n; i++) {
+            int k = fill[arr[i]]++;
+            incomingFrom[k] = dep[i];
+            incomingMinutes[k] = minutes[i];
+        }
+        outgoingOffsets = new int[cityCount + 1];
+        for (int i = 0; i < n; i++) outgoingOffsets[dep[i] + 1]++;
+        for (int c = 0; c < cityCount; c++) outgoingOffsets[c + 1] += outgoingOffsets[c];
+        outgoingTo = new int[n];
+        outgoingMinutes = new int[n];
+        fill = Arrays.copyOf(outgoingOffsets, cityCount);
+        for (int i = 0; i < n; i++) {
+            int k = fill[dep[i]]++;
+            outgoingTo[k] = arr[i];
+            outgoingMinutes[k] = minutes[i];
+        }
+
+        if (cityCount <= ALL_PAIRS_LIMIT) {
+            allPairs = new Goal[cityCount];
+            for (int g = 0; g < cityCount; g++) allPairs[g] = compute(g);
+            recent = null;
+            recentFrom = null;
+        } else {
+            allPairs = null;
+            recent = lruRows();
+            recentFrom = lruRows();
+        }
+    }
+
+    private static Map<Integer, Goal> lruRows() {
+        return new LinkedHashMap<>(CACHED_ROWS * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Goal> eldest) {
+                return size() > CACHED_ROWS;
+            }
+        };
+    }
+
+    public boolean isAllPairs() {
+        return allPairs != null;
+    }
+
+    // the bounds of every city towards goal
+    public Goal toward(int goal) {
+        if (allPairs != null) return allPairs[goal];
+        synchronized (recent) {
+            Goal row = recent.get(goal);
+            if (row != null) return row;
+        }
+        Goal row = compute(goal); // outside the lock, a racing thread may compute it too
+        synchronized (recent) {
+            recent.put(goal, row);
+        }
+        return row;
+    }
+
+    // Bounds towards the nearest of several goals, reaching goals[i] counting as head[i] (>= 0)
+    // minutes already spent: legs(c) is the fewest connections to any of them and minutes(c)
+    // the least head[i] plus travel time to goals[i]. Computed on every call, not cached.
+    public Goal towardAny(int[] goals, int[] head) {
+        if (allPairs == null) return compute(goals, head);
+        // the goals' rows are already there, take the minimum of them city by city
+        byte[] legs = new byte[cityCount];
+        int[] minutes = new int[cityCount];
+        Arrays.fill(legs, NO_LEGS);
+        Arrays.fill(minutes, UNREACHABLE);
+        for (int i = 0; i < goals.length; i++) {
+            Goal row = allPairs[goals[i]];
+            for (int c = 0; c < cityCount; c++) {
+                if (row.legs[c] < legs[c]) legs[c] = row.legs[c];
+                if (row.minutes[c] != UNREACHABLE && head[i] + row.minutes[c] < minutes[c]) {
+                    minutes[c] = head[i] + row.minutes[c];
+                }
+            }
+        }
+        return new Goal(legs, minutes);
+    }
+
+    // Bounds of every city from origin: legs(c) is the fewest connections from origin to c and
+    // minutes(c) the least travel time. A column of the all-pairs tables, or cached like toward.
+    public Goal from(int origin) {
+        if (allPairs != null) {
+            byte[] legs = new byte[cityCount];
+            int[] minutes = new int[cityCount];
+            for (int c = 0; c < cityCount; c++) {
+                legs[c] = allPairs[c].legs[origin];
+                minutes[c] = allPairs[c].minutes[origin];
+            }
+            return new Goal(legs, minutes);
+        }
+        synchronized (recentFrom) {
+            Goal row = recentFrom.get(origin);
+            if (row != null) return row;
+        }
+        Goal row = compute(outgoingOffsets, outgoingTo, outgoingMinutes, new int[] { origin }, new int[1]);
+        synchronized (recentFrom) {
+            recentFrom.put(origin, row);
+        }
+        return row;
+    }
+
+    public int minLegs(int from, int to) {
+        return toward(to).legs(from);
+    }
+
+    public int minMinutes(int from, int to) {
+        return toward(to).minutes(from);
+    }
+
+    // the graph copies and the rows, cached rows counted at the cache's cap
+    public long memoryBytes() {
+        long graph = 4L * (incomingOffsets.length + incomingFrom.length + incomingMinutes.length
+                + outgoingOffsets.length + outgoingTo.length + outgoingMinutes.length);
+        long rows = allPairs != null ? cityCount : 2L * CACHED_ROWS;
+        return graph + rows * 5L * cityCount; // a byte and an int per city
+    }
+
+    // one goal's row
+    public static final class Goal {
+        private final byte[] legs;
+        private final int[] minutes;
+
+        private Goal(byte[] legs, int[] minutes) {
+            this.legs = legs;
+            this.minutes = minutes;
+        }
+
+        public int legs(int city) {
+            byte l = legs[city];
+            return l == NO_LEGS ? UNREACHABLE : l;
+        }
+
+        public int minutes(int city) {
+            return minutes[city];
+        }
+    }
+
+    private Goal compute(int goal) {
+        return compute(new int[] { goal }, new int[1]);
+    }
+
+    private Goal compute(int[] goals, int[] start) {
+        return compute(incomingOffsets, incomingFrom, incomingMinutes, goals, start);
+    }
+
+    // breadth-first for legs and Dijkstra for minutes, both walking the given edges out of the
+    // goals: the arrivals backwards for toward rows, the departures forwards for from rows
+    private Goal compute(int[] offsets, int[] neighbour, int[] edgeMinutes, int[] goals, int[] start) {
+        byte[] legs = new byte[cityCount];
+        Arrays.fill(legs, NO_LEGS);
+        int[] queue = new int[cityCount];
+        int head = 0, tail = 0;
+        for (int goal : goals) {
+            if (legs[goal] == NO_LEGS) {
+                legs[goal] = 0;
+                queue[tail++] = goal;
+            }
+        }
+        while (head < tail) {
+            int c = queue[head++];
+            int next = Math.min(legs[c] + 1, NO_LEGS - 1);
+            for (int k = offsets[c]; k < offsets[c + 1]; k++) {
+                int u = neighbour[k];
+                if (legs[u] == NO_LEGS) {
+                    legs[u] = (byte) next;
+                    queue[tail++] = u;
+                }
+            }
+        }
+
+        int[] minutes = new int[cityCount];
+        Arrays.fill(minutes, UNREACHABLE);
+        // heap of (minutes << 32 | city), stale entries are skipped when popped
+        long[] heap = new long[Math.max(16, Math.max(cityCount, goals.length))];
+        int size = 0;
+        for (int i = 0; i < goals.length; i++) {
+            if (start[i] < minutes[goals[i]]) {
+                minutes[goals[i]] = start[i];
+                heap[size] = ((long) start[i] << 32) | goals[i];
+                siftUp(heap, size++);
+            }
+        }
+        while (size > 0) {
+            long top = heap[0];
+            heap[0] = heap[--size];
+            siftDown(heap, size);
+            int c = (int) top;
+            int d = (int) (top >>> 32);
+            if (d > minutes[c]) continue;
+            for (int k = offsets[c]; k < offsets[c + 1]; k++) {
+                int u = neighbour[k];
+                int nd = d + edgeMinutes[k];
+                if (nd < minutes[u]) {
+                    minutes[u] = nd;
+                    if (size == heap.length) heap = Arrays.copyOf(heap, size * 2);
+                    heap[size] = ((long) nd << 32) | u;
+                    siftUp(heap, size++);
+                }
+            }
+        }
+        return new Goal(legs, minutes);
+    }
+
+    private static void siftUp(long[] heap, int i) {
+        long x = heap[i];
+        while (i > 0) {
+            int p = (i - 1) >>> 1;
+            if (heap[p] <= x) break;
+            heap[i] = heap[p];
+            i = p;
+        }
+        heap[i] = x;
+    }
+
+    private static void siftDown(long[] heap, int size) {
+        if (size == 0) return;
+        long x = heap[0];
+        int i = 0;
+        while (true) {
+            int l = 2 * i + 1;
+            if (l >= size) break;
+            int r = l + 1;
+            int m = r < size && heap[r] < heap[l] ? r : l;
+            if (heap[m] >= x) break;
+            heap[i] = heap[m];
+            i = m;
+        }
+        heap[i] = x;
+    }
+}
@@ -0,0 +1,42 @@
+package infra;
+
+import java.util.*;
+
+// Dictionary of city names, built once per network load.
+// Every normalized (trimmed, lower-case) name gets a dense id 0..size()-1, so the
+// graph and the searches can work with int arrays instead of string keys.
+public final class CityIndex {
+
+    private final Map<String, Integer> idsByKey = new HashMap<>();
+    private final List<String> names = new ArrayList<>(); // display name, first spelling seen
+
+    // id for the name, adding it when it is new
+    int intern(String city) {
+        String key = normalize(city);
+        Integer id = idsByKey.get(key);
+        if (id != null) return id;
+        int next = names.size();
+        idsByKey.put(key, next);
+        names.add(city == null ? "" : city.trim());
+        return next;
+    }
+
+    // id of the city, or -1 when the network has no such city
+    public int idOf(String city) {
+        if (city == null) return -1;
+        Integer id = idsByKey.get(normalize(city));
+        return id == null ? -1 : id;
+    }
+
+    public String nameOf(int id) {
+        return names.get(id);
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    public static String normalize(String city) {
+        return city == null ? "" : city.trim().toLowerCase(Locale.ROOT);
+    }
+}
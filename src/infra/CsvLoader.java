@@ -1,81 +1,460 @@
 package infra;
+import java.io.CharArrayReader;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.DayOfWeek;
 import java.time.LocalTime;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
+import domain.DayMask;
 import domain.TrainType;
 import domain.TrainConnection;
 
 public class CsvLoader {
 
+    // called for every row that cannot be turned into a TrainConnection (line numbers start at 1 = header)
+    @FunctionalInterface
+    public interface RowErrorListener {
+        void onError(long lineNumber, String line, Exception cause);
+    }
+
+    // default listener, same console message as before plus the line number
+    public static final RowErrorListener PRINT_ERRORS =
+            (lineNumber, line, cause) -> System.out.println("Error parsing row " + lineNumber + ": " + line);
+
+    private static final int READ_BUFFER = 1 << 16;
+
+    // parallel load: chunks are at least this big, and at most this big (one mapping each)
+    private static final long MIN_CHUNK_BYTES = 1 << 18;
+    private static final long MAX_CHUNK_BYTES = 1 << 26;
+
     public static List<TrainConnection> load(String filePath) throws IOException {
-        List<String> lines = Files.readAllLines(Path.of(filePath));
-        if (lines.isEmpty()) return Collections.emptyList();
+        return load(filePath, PRINT_ERRORS);
+    }
 
-        //splitting csv headers into separate cells
-        List<String> headerCells = splitCsvLine(lines.getFirst());
-        Map<String, Integer> idx = buildHeaderIndex(headerCells); //lookup map from header name
+    public static List<TrainConnection> load(String filePath, RowErrorListener errors) throws IOException {
+        try (Reader in = Files.newBufferedReader(Path.of(filePath), StandardCharsets.UTF_8)) {
+            return load(in, errors);
+        }
+    }
 
-        //list that stores each train connection object starting from row 2
+    // streams the CSV: one line in memory at a time, cells are parsed straight out of the line buffer
+    public static List<TrainConnection> load(Reader in, RowErrorListener errors) throws IOException {
         List<TrainConnection> results = new ArrayList<>();
-        for (int i = 1; i < lines.size(); i++) {
-            String line = lines.get(i);
-            if (line == null || line.trim().isEmpty()) continue;
+        LineReader lines = new LineReader(in);
+        if (!lines.next()) return results;
 
-            List<String> cells = splitCsvLine(line); //splitting rows again into cells
+        //splitting csv headers into separate cells
+        RowParser parser = new RowParser(buildHeaderIndex(splitCsvLine(lines.asString())));
 
+        //each train connection object starting from row 2
+        while (lines.next()) {
+            if (lines.isBlank()) continue;
             try {
-                TrainConnection tc = parseRow(cells, idx);
+                TrainConnection tc = parser.parse(lines.buf, lines.len);
                 if (tc != null) {
                     results.add(tc);
                 }
             } catch (Exception ex) {
-                System.out.println("Error parsing row: " + line);
+                errors.onError(lines.lineNumber, lines.asString(), ex);
             }
         }
         return results;
     }
 
-    private static TrainConnection parseRow(List<String> cells, Map<String, Integer> idx) {
-        String routeId = get(cells, idx, "Route ID");
-        String departureCity = get(cells, idx, "Departure City");
-        String arrivalCity = get(cells, idx, "Arrival City");
+    // ---- parallel load ----
+
+    public static List<TrainConnection> loadParallel(String filePath) throws IOException {
+        return loadParallel(filePath, PRINT_ERRORS, ForkJoinPool.commonPool());
+    }
+
+    // same rows, order and error callbacks as load(filePath, errors), parsed on the given pool
+    public static List<TrainConnection> loadParallel(String filePath, RowErrorListener errors, ForkJoinPool pool)
+            throws IOException {
+        List<List<TrainConnection>> chunks = loadChunks(Path.of(filePath), errors, pool);
+        int total = 0;
+        for (List<TrainConnection> c : chunks) total += c.size();
+        List<TrainConnection> results = new ArrayList<>(total);
+        for (List<TrainConnection> c : chunks) results.addAll(c);
+        return results;
+    }
+
+    /**
+     * Splits the file into byte ranges that start right after a line break and parses each range
+     * on the pool. Returns the rows per chunk, in file order. A row never spans lines
+     * (quote state is reset at every line, exactly as in load()), so any line break is a
+     * safe cut even inside a quoted cell. Errors are reported after parsing, in file
+     * order and with their real line numbers.
+     */
+    static List<List<TrainConnection>> loadChunks(Path file, RowErrorListener errors, ForkJoinPool pool)
+            throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            long bodyStart = nextLineStart(ch, 0, size);
+            if (size == 0) return List.of();
+
+            // the header is parsed once and shared (read-only) by every chunk
+            String header = decode(ch, 0, bodyStart).toString();
+            if (header.endsWith("\n")) header = header.substring(0, header.length() - 1);
+            if (header.endsWith("\r")) header = header.substring(0, header.length() - 1);
+            Map<String, Integer> idx = buildHeaderIndex(splitCsvLine(header));
+
+            long body = size - bodyStart;
+            int wanted = (int) Math.max((body + MAX_CHUNK_BYTES - 1) / MAX_CHUNK_BYTES,
+                    Math.min(pool.getParallelism() * 4L, (body + MIN_CHUNK_BYTES - 1) / MIN_CHUNK_BYTES));
+            List<ChunkTask> tasks = new ArrayList<>();
+            long start = bodyStart;
+            for (int i = 1; i <= wanted && start < size; i++) {
+                long end = i == wanted ? size : nextLineStart(ch, bodyStart + body * i / wanted, size);
+                if (end > start) tasks.add(new ChunkTask(ch, start, end, idx));
+                start = end;
+            }
+
+            for (ChunkTask t : tasks) pool.execute(t);
+            List<List<TrainConnection>> out = new ArrayList<>(tasks.size());
+            long linesBefore = 1; // header
+            try {
+                for (ChunkTask t : tasks) {
+                    Chunk c = t.join();
+                    for (RowError e : c.errors) errors.onError(linesBefore + e.line, e.text, e.cause);
+                    linesBefore += c.lines;
+                    out.add(c.rows);
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return out;
+        }
+    }
+
+    // first byte of the line after the one containing pos (size if there is none); lines end at
+    // '\n', '\r' or "\r\n" as for BufferedReader.readLine. Neither byte ever occurs inside a
+    // multi-byte UTF-8 sequence, so this is also a character boundary.
+    private static long nextLineStart(FileChannel ch, long pos, long size) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(8192);
+        while (pos < size) {
+            buf.clear();
+            int n = ch.read(buf, pos);
+            if (n <= 0) break;
+            for (int i = 0; i < n; i++) {
+                byte b = buf.get(i);
+                if (b == '\n') return pos + i + 1;
+                if (b == '\r') {
+                    long after = pos + i + 1;
+                    return after < size && byteAt(ch, after) == '\n' ? after + 1 : after;
+                }
+            }
+            pos += n;
+        }
+        return size;
+    }
+
+    private static byte byteAt(FileChannel ch, long pos) throws IOException {
+        ByteBuffer one = ByteBuffer.allocate(1);
+        return ch.read(one, pos) == 1 ? one.get(0) : -1;
+    }
+
+    // strict UTF-8, like Files.newBufferedReader
+    private static CharBuffer decode(FileChannel ch, long start, long end) throws IOException {
+        ByteBuffer bytes = ch.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        return StandardCharsets.UTF_8.newDecoder().decode(bytes);
+    }
+
+    private record RowError(long line, String text, Exception cause) {}
+
+    private record Chunk(List<TrainConnection> rows, List<RowError> errors, long lines) {}
+
+    // parses one byte range with its own LineReader and RowParser, so chunks share nothing mutable
+    @SuppressWarnings("serial")
+    private static final class ChunkTask extends RecursiveTask<Chunk> {
+        private final FileChannel ch;
+        private final long start;
+        private final long end;
+        private final Map<String, Integer> idx;
+
+        ChunkTask(FileChannel ch, long start, long end, Map<String, Integer> idx) {
+            this.ch = ch;
+            this.start = start;
+            this.end = end;
+            this.idx = idx;
+        }
+
+        @Override
+        protected Chunk compute() {
+            try {
+                CharBuffer text = decode(ch, start, end);
+                LineReader lines = new LineReader(new CharArrayReader(text.array(),
+                        text.arrayOffset() + text.position(), text.remaining()));
+                RowParser parser = new RowParser(idx);
+                List<TrainConnection> rows = new ArrayList<>();
+                List<RowError> errors = new ArrayList<>(0);
+                while (lines.next()) {
+                    if (lines.isBlank()) continue;
+                    try {
+                        TrainConnection tc = parser.parse(lines.buf, lines.len);
+                        if (tc != null) rows.add(tc);
+                    } catch (Exception ex) {
+                        errors.add(new RowError(lines.lineNumber, lines.asString(), ex));
+                    }
+                }
+                return new Chunk(rows, errors, lines.lineNumber);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    // Reads lines into one reusable char buffer (no String per line); a line ends at '\n', '\r'
+    // or "\r\n", as for BufferedReader.readLine
+    static final class LineReader {
+        private final Reader in;
+        private final char[] chunk = new char[READ_BUFFER];
+        private int chunkPos;
+        private int chunkLen;
+        private boolean skipLf; // the last line ended at '\r', a '\n' right after it belongs to it
+
+        char[] buf = new char[256];
+        int len;
+        long lineNumber;
+
+        LineReader(Reader in) {
+            this.in = in;
+        }
+
+        // false at end of input
+        boolean next() throws IOException {
+            len = 0;
+            boolean any = false;
+            while (true) {
+                if (chunkPos == chunkLen) {
+                    chunkLen = in.read(chunk, 0, chunk.length);
+                    chunkPos = 0;
+                    if (chunkLen <= 0) {
+                        chunkLen = 0;
+                        if (any) lineNumber++;
+                        return any;
+                    }
+                }
+                char c = chunk[chunkPos++];
+                if (skipLf) {
+                    skipLf = false;
+                    if (c == '\n') continue;
+                }
+                any = true;
+                if (c == '\n' || c == '\r') {
+                    skipLf = c == '\r';
+                    lineNumber++;
+                    return true;
+                }
+                if (len == buf.length) buf = Arrays.copyOf(buf, len * 2);
+                buf[len++] = c;
+            }
+        }
+
+        boolean isBlank() {
+            for (int i = 0; i < len; i++) {
+                if (buf[i] > ' ') return false;
+            }
+            return true;
+        }
+
+        String asString() {
+            return new String(buf, 0, len);
+        }
+    }
+
+    // Turns one line into a TrainConnection. Column positions are resolved from the header once,
+    // cells are unquoted into a reusable buffer and kept as (start, end) offsets into it,
+    // so the line itself stays intact for error reporting.
+    static final class RowParser {
+        private final int colRouteId, colDepCity, colArrCity, colDepTime, colArrTime,
+                colTrainType, colDays, colFirst, colSecond;
 
-        LocalTime departureTime = parseTime(get(cells, idx, "Departure Time"));
-        String arrivalRaw = get(cells, idx, "Arrival Time");
-        int arrivalDayOffset = arrivalRaw != null && arrivalRaw.contains("(+1d)") ? 1 : 0;
+        private char[] cells = new char[256];
+        private int[] cellStart = new int[16];
+        private int[] cellEnd = new int[16];
+        private int cellCount;
 
-        String arrivalClean = arrivalRaw;
-        if (arrivalClean != null) {
-            int paren = arrivalClean.indexOf('('); // strips " (+1d)" or anything after '('
-            if (paren >= 0) arrivalClean = arrivalClean.substring(0, paren).trim();
+        // repeated values are parsed once
+        private final Map<String, String> cities = new HashMap<>();
+        private final Map<String, TrainType> trainTypes = new HashMap<>();
+        private final Map<String, Integer> days = new HashMap<>();
+        private static final LocalTime[] TIMES = new LocalTime[24 * 60];
+        static {
+            for (int m = 0; m < TIMES.length; m++) TIMES[m] = LocalTime.of(m / 60, m % 60);
         }
-        LocalTime arrivalTime = parseTime(arrivalClean);
 
+        RowParser(Map<String, Integer> idx) {
+            colRouteId = idx.getOrDefault("Route ID", -1);
+            colDepCity = idx.getOrDefault("Departure City", -1);
+            colArrCity = idx.getOrDefault("Arrival City", -1);
+            colDepTime = idx.getOrDefault("Departure Time", -1);
+            colArrTime = idx.getOrDefault("Arrival Time", -1);
+            colTrainType = idx.getOrDefault("Train Type", -1);
+            colDays = idx.getOrDefault("Days of Operation", -1);
+            colFirst = idx.getOrDefault("First Class ticket rate (in euro)", -1);
+            colSecond = idx.getOrDefault("Second Class ticket rate (in euro)", -1);
+        }
+
+        TrainConnection parse(char[] raw, int len) {
+            split(raw, len);
+            char[] line = cells;
 
-        //TrainType uses its own method that recognizes strings and matches them with their enum
-        TrainType trainType = TrainType.fromString(get(cells, idx, "Train Type"));
-        Set<DayOfWeek> days = parseDays(get(cells, idx, "Days of Operation"));
+            String routeId = cell(line, colRouteId);
+            String departureCity = city(line, colDepCity);
+            String arrivalCity = city(line, colArrCity);
 
-        int firstClass = parseEuroInt(get(cells, idx, "First Class ticket rate (in euro)"));
-        int secondClass = parseEuroInt(get(cells, idx, "Second Class ticket rate (in euro)"));
+            LocalTime departureTime = time(line, cellStart(colDepTime), cellEnd(colDepTime));
 
-        //new train connection object is created with listed characteristics and trip duration is internally computed inside constructor
-        return new TrainConnection(
-                routeId,
-                trimOrNull(departureCity),
-                trimOrNull(arrivalCity),
-                departureTime,
-                arrivalTime,
-                trainType,
-                days,
-                firstClass,
-                secondClass,
-                arrivalDayOffset
-        );
+            // arrival looks like "08:08" or "08:08 (+1d)"; strip anything from '('
+            int aStart = cellStart(colArrTime);
+            int aEnd = cellEnd(colArrTime);
+            int arrivalDayOffset = contains(line, aStart, aEnd, "(+1d)") ? 1 : 0;
+            for (int i = aStart; i < aEnd; i++) {
+                if (line[i] == '(') {
+                    aEnd = i;
+                    break;
+                }
+            }
+            LocalTime arrivalTime = time(line, aStart, aEnd);
+
+            //TrainType uses its own method that recognizes strings and matches them with their enum
+            TrainType trainType = trainTypes.computeIfAbsent(cell(line, colTrainType), TrainType::fromString);
+            Set<DayOfWeek> operating = DayMask.toSet(days.computeIfAbsent(cell(line, colDays), CsvLoader::parseDays));
+
+            int firstClass = euros(line, cellStart(colFirst), cellEnd(colFirst));
+            int secondClass = euros(line, cellStart(colSecond), cellEnd(colSecond));
+
+            //trip duration is internally computed inside constructor
+            return new TrainConnection(
+                    routeId,
+                    departureCity,
+                    arrivalCity,
+                    departureTime,
+                    arrivalTime,
+                    trainType,
+                    operating,
+                    firstClass,
+                    secondClass,
+                    arrivalDayOffset
+            );
+        }
+
+        // same quoting rules as splitCsvLine, without a String or StringBuilder per cell
+        private void split(char[] line, int len) {
+            if (cells.length < len) cells = new char[Math.max(len, cells.length * 2)];
+            char[] out = cells;
+            cellCount = 0;
+            int write = 0;
+            int start = 0;
+            boolean inQuotes = false;
+            for (int i = 0; i < len; i++) {
+                char c = line[i];
+                if (c == '"') {
+                    if (inQuotes && i + 1 < len && line[i + 1] == '"') {
+                        out[write++] = '"';
+                        i++;
+                    } else {
+                        inQuotes = !inQuotes;
+                    }
+                } else if (c == ',' && !inQuotes) {
+                    addCell(start, write);
+                    start = write;
+                } else {
+                    out[write++] = c;
+                }
+            }
+            addCell(start, write);
+        }
+
+        private void addCell(int start, int end) {
+            if (cellCount == cellStart.length) {
+                cellStart = Arrays.copyOf(cellStart, cellCount * 2);
+                cellEnd = Arrays.copyOf(cellEnd, cellCount * 2);
+            }
+            cellStart[cellCount] = start;
+            cellEnd[cellCount] = end;
+            cellCount++;
+        }
+
+        // missing columns read as empty cells, like get() used to
+        private int cellStart(int col) {
+            return (col < 0 || col >= cellCount) ? 0 : cellStart[col];
+        }
+
+        private int cellEnd(int col) {
+            return (col < 0 || col >= cellCount) ? 0 : cellEnd[col];
+        }
+
+        private String cell(char[] line, int col) {
+            return new String(line, cellStart(col), cellEnd(col) - cellStart(col));
+        }
+
+        // trimmed, null when empty, one shared String per distinct city
+        private String city(char[] line, int col) {
+            int s = cellStart(col);
+            int e = cellEnd(col);
+            while (s < e && line[s] <= ' ') s++;
+            while (e > s && line[e - 1] <= ' ') e--;
+            if (s == e) return null;
+            String name = new String(line, s, e - s);
+            String shared = cities.putIfAbsent(name, name);
+            return shared == null ? name : shared;
+        }
+
+        // "HH:mm" without going through the java.time parser; anything else falls back to LocalTime.parse
+        private static LocalTime time(char[] line, int s, int e) {
+            while (s < e && line[s] <= ' ') s++;
+            while (e > s && line[e - 1] <= ' ') e--;
+            if (s == e) throw new IllegalArgumentException("Time is empty");
+            if (e - s == 5 && line[s + 2] == ':'
+                    && digit(line[s]) && digit(line[s + 1]) && digit(line[s + 3]) && digit(line[s + 4])) {
+                int h = (line[s] - '0') * 10 + (line[s + 1] - '0');
+                int m = (line[s + 3] - '0') * 10 + (line[s + 4] - '0');
+                if (h < 24 && m < 60) return TIMES[h * 60 + m];
+            }
+            return parseTime(new String(line, s, e - s));
+        }
+
+        private static int euros(char[] line, int s, int e) {
+            while (s < e && line[s] <= ' ') s++;
+            while (e > s && line[e - 1] <= ' ') e--;
+            if (s == e) throw new IllegalArgumentException("Price is empty");
+            if (e - s <= 9) {
+                int v = 0;
+                boolean plain = true;
+                for (int i = s; i < e && plain; i++) {
+                    plain = digit(line[i]);
+                    v = v * 10 + (line[i] - '0');
+                }
+                if (plain) return v;
+            }
+            return parseEuroInt(new String(line, s, e - s));
+        }
+
+        private static boolean digit(char c) {
+            return c >= '0' && c <= '9';
+        }
+
+        private static boolean contains(char[] line, int s, int e, String needle) {
+            int n = needle.length();
+            for (int i = s; i + n <= e; i++) {
+                int k = 0;
+                while (k < n && line[i + k] == needle.charAt(k)) k++;
+                if (k == n) return true;
+            }
+            return false;
+        }
     }
 
     //extract header string names from list and add them to map along with their indexes
@@ -87,20 +466,6 @@ public class CsvLoader {
         return map;
     }
 
-    private static String get(List<String> cells, Map<String, Integer> idx, String header) {
-        Integer i = idx.get(header); //get key value from map
-        if (i == null || i < 0 || i >= cells.size()) {
-            return "";
-        }
-        return cells.get(i); //get the value in cell for the same index as map obtained from header string
-    }
-
-    private static String trimOrNull(String s) {
-        if (s == null) return null;
-        String t = s.trim();
-        return t.isEmpty() ? null : t;
-    }
-
     private static LocalTime parseTime(String raw) {
         if (raw == null) throw new IllegalArgumentException("Time is null");
         String t = raw.trim();
@@ -116,17 +481,18 @@ public class CsvLoader {
         return Integer.parseInt(t);
     }
 
-    private static Set<DayOfWeek> parseDays(String raw) {
-        if (raw == null) return EnumSet.noneOf(DayOfWeek.class);
+    // days of operation as a DayMask bit set ("Daily", "Sat-Sun", "Fri-Sun", "Mon,Wed,Fri")
+    static int parseDays(String raw) {
+        if (raw == null) return DayMask.NONE;
         String s = raw.trim();
-        if (s.isEmpty()) return EnumSet.noneOf(DayOfWeek.class);
+        if (s.isEmpty()) return DayMask.NONE;
 
         if (equalsIgnoreCase(s, "Daily")) {
-            return EnumSet.allOf(DayOfWeek.class);
+            return DayMask.ALL;
         }
 
         if (equalsIgnoreCase(s, "Sat-Sun")) {
-            return EnumSet.of(DayOfWeek.SATURDAY, DayOfWeek.SUNDAY);
+            return DayMask.bit(DayOfWeek.SATURDAY) | DayMask.bit(DayOfWeek.SUNDAY);
         }
 
         //For ranges like "Fri-Sun"
@@ -136,25 +502,24 @@ public class CsvLoader {
                 DayOfWeek start = parseSingleDay(parts[0]);
                 DayOfWeek end = parseSingleDay(parts[1]);
                 if (start != null && end != null) {
-                    EnumSet<DayOfWeek> set = EnumSet.noneOf(DayOfWeek.class);
+                    int mask = DayMask.bit(start);
                     int cur = start.getValue();
-                    set.add(start);
                     while (cur != end.getValue()) {
                         cur = (cur % 7) + 1; // 6 % 7 + 1 = 7 example
-                        set.add(DayOfWeek.of(cur));
+                        mask |= DayMask.bit(DayOfWeek.of(cur));
                     }
-                    return set;
+                    return mask;
                 }
             }
         }
 
         //comma seperated
-        EnumSet<DayOfWeek> set = EnumSet.noneOf(DayOfWeek.class);
+        int mask = DayMask.NONE;
         for (String token : s.split(",")) {
             DayOfWeek d = parseSingleDay(token);
-            if (d != null) set.add(d);
+            if (d != null) mask |= DayMask.bit(d);
         }
-        return set;
+        return mask;
     }
 
     private static DayOfWeek parseSingleDay(String token) {
@@ -0,0 +1,175 @@
+package infra;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The active timetable, swapped atomically when the CSV changes.
+ *
+ * Every reload builds a brand-new TrainNetwork off to the side and publishes it with one
+ * reference write; published networks are read-only and never loaded again. A search
+ * should call current() once and use that instance throughout, so it finishes on the
+ * version it started with while a newer one is being built or swapped in.
+ *
+ * watch() starts a background NIO WatchService on the CSV's directory that reloads after
+ * the file has been quiet for a short moment (editors and copies write in several steps).
+ * A failed reload, or one that yields an empty timetable, keeps the previous version.
+ */
+public final class LiveTrainNetwork implements AutoCloseable {
+
+    private static final long QUIET_MILLIS = 250;
+
+    private final Path csv;
+    private final Path snapshot; // null = always parse the CSV
+
+    private final AtomicReference<TrainNetwork> current = new AtomicReference<>();
+    private final Object reloadLock = new Object();
+
+    private final AtomicLong reloads = new AtomicLong();
+    private final AtomicLong failedReloads = new AtomicLong();
+    private volatile long lastReloadMillis;
+    private final AtomicLong totalReloadMillis = new AtomicLong();
+    private volatile String lastError;
+
+    private WatchService watchService;
+    private Thread watcher;
+
+    public LiveTrainNetwork(Path csv) {
+        this(csv, null);
+    }
+
+    // loads through TrainNetwork.loadCached with the given snapshot file
+    public LiveTrainNetwork(Path csv, Path snapshot) {
+        if (csv == null) throw new IllegalArgumentException("csv path is required");
+        this.csv = csv;
+        this.snapshot = snapshot;
+    }
+
+    // the active network; throws until the first reload() succeeded
+    public TrainNetwork current() {
+        TrainNetwork net = current.get();
+        if (net == null) throw new IllegalStateException("timetable not loaded yet, call reload() first");
+        return net;
+    }
+
+    public boolean isLoaded() {
+        return current.get() != null;
+    }
+
+    public Path getCsvPath() {
+        return csv;
+    }
+
+    /**
+     * Builds a new network from the CSV and makes it the active one. Reloads are serialized;
+     * readers are never blocked. On failure the active network stays as it was.
+     */
+    public TrainNetwork reload() throws IOException {
+        synchronized (reloadLock) {
+            long start = System.nanoTime();
+            TrainNetwork next = new TrainNetwork();
+            try {
+                if (snapshot != null) {
+                    next.loadCached(csv.toString(), snapshot);
+                } else {
+                    next.load(csv.toString());
+                }
+                TrainNetwork previous = current.get();
+                if (previous != null && next.getConnectionCount() == 0 && previous.getConnectionCount() > 0) {
+                    throw new IOException("new timetable has no connections, keeping version " + previous.getVersion());
+                }
+            } catch (IOException | RuntimeException e) {
+                failedReloads.incrementAndGet();
+                lastError = e.getMessage();
+                throw e;
+            }
+            next.markReadOnly();
+            current.set(next);
+
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            lastReloadMillis = millis;
+            totalReloadMillis.addAndGet(millis);
+            reloads.incrementAndGet();
+            lastError = null;
+            return next;
+        }
+    }
+
+    // starts the background watcher (once); the network must have been loaded already
+    public synchronized void watch() throws IOException {
+        if (watcher != null) return;
+        Path dir = csv.toAbsolutePath().getParent();
+        WatchService ws = dir.getFileSystem().newWatchService();
+        dir.register(ws, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        watchService = ws;
+        watcher = new Thread(() -> watchLoop(ws), "timetable-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private void watchLoop(WatchService ws) {
+        Path name = csv.getFileName();
+        try {
+            while (true) {
+                WatchKey key = ws.take();
+                boolean changed = false;
+                for (WatchEvent<?> e : key.pollEvents()) {
+                    if (e.kind() == StandardWatchEventKinds.OVERFLOW || name.equals(e.context())) changed = true;
+                }
+                key.reset();
+                if (!changed) continue;
+
+                // wait until the directory has been quiet, then rebuild once
+                WatchKey more;
+                while ((more = ws.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    more.pollEvents();
+                    more.reset();
+                }
+                try {
+                    reload();
+                } catch (IOException | RuntimeException e) {
+                    // already counted in the metrics, the old version stays active
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // close() was called
+        }
+    }
+
+    public ReloadStats stats() {
+        TrainNetwork net = current.get();
+        return new ReloadStats(
+                net == null ? 0 : net.getVersion(),
+                net == null ? 0 : net.getConnectionCount(),
+                reloads.get(),
+                failedReloads.get(),
+                lastReloadMillis,
+                totalReloadMillis.get(),
+                lastError);
+    }
+
+    // reload metrics: active version and size, how many reloads ran or failed and how long they took
+    public record ReloadStats(long activeVersion, int activeConnections, long reloads, long failedReloads,
+                              long lastReloadMillis, long totalReloadMillis, String lastError) {
+        public long averageReloadMillis() {
+            return reloads == 0 ? 0 : totalReloadMillis / reloads;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (watcher == null) return;
+        watcher.interrupt();
+        watchService.close();
+        watcher = null;
+        watchService = null;
+    }
+}
@@ -0,0 +1,302 @@
+package infra;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.zip.CRC32C;
+
+import domain.DayMask;
+import domain.TrainConnection;
+import domain.TrainType;
+
+/**
+ * Versioned binary image of a fully indexed TrainNetwork, so a restart does not have to
+ * parse the CSV, sort the timetable and intern the cities again.
+ *
+ * Layout (little-endian):
+ * <pre>
+ *   header   int magic, int version, long sourceSize, long sourceMtime, long sourceHash,
+ *            long payloadLength, long payloadCrc
+ *   payload  string table   int count, then per string: int byteLength + UTF-8 bytes, padded to 4
+ *            train types    int count, then one string index per type name
+ *            connections    int n, then int[n] columns in CSV order: routeId, departure city,
+ *                           arrival city (string indexes), departure / arrival second of day,
+ *                           train type, day mask (bit 0 = Monday), arrival day offset,
+ *                           first class price, second class price
+ *            departure order int[n] (connection id -> CSV index)
+ *            city graph     int cityCount, int[cityCount] name string indexes,
+ *                           int[cityCount + 1] offsets, int[n] edges, int[n] departure city ids,
+ *                           int[n] arrival city ids
+ * </pre>
+ * The file is memory-mapped on read and the int columns are copied out in bulk.
+ * Source hash and payload checksum are CRC32C.
+ */
+public final class NetworkSnapshot {
+
+    public static final int MAGIC = 0x544E5331; // "TNS1"
+    public static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 8 + 8 + 8;
+    private static final int COLUMNS = 10;
+
+    private NetworkSnapshot() {}
+
+    // snapshots live next to the SQLite file, one per CSV file name
+    public static Path defaultPathFor(Path csv) {
+        return Path.of("data", csv.getFileName() + ".snapshot");
+    }
+
+    /**
+     * True when the snapshot exists, has this format version and was written from a source
+     * with the same size and either the same mtime or the same content hash.
+     */
+    public static boolean isFresh(Path snapshot, Path source) throws IOException {
+        if (!Files.isRegularFile(snapshot) || !Files.isRegularFile(source)) return false;
+        try (FileChannel ch = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            if (ch.size() < HEADER_BYTES) return false;
+            ByteBuffer h = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (h.hasRemaining() && ch.read(h, h.position()) > 0) { }
+            h.flip();
+            if (h.getInt() != MAGIC || h.getInt() != VERSION) return false;
+            long size = h.getLong();
+            long mtime = h.getLong();
+            long hash = h.getLong();
+            if (size != Files.size(source)) return false;
+            if (mtime == Files.getLastModifiedTime(source).toMillis()) return true;
+            return hash == hashOf(source);
+        }
+    }
+
+    // ---- write ----
+
+    public static void write(TrainNetwork net, Path snapshot, Path source) throws IOException {
+        List<TrainConnection> conns = net.connectionsInCsvOrder();
+        int n = conns.size();
+        CityIndex cities = net.getCityIndex();
+
+        Map<String, Integer> stringIds = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        TrainType[] types = TrainType.values();
+        int[] typeNames = new int[types.length];
+        for (int t = 0; t < types.length; t++) typeNames[t] = stringId(types[t].name(), stringIds, strings);
+
+        int[][] cols = new int[COLUMNS][n];
+        for (int i = 0; i < n; i++) {
+            TrainConnection tc = conns.get(i);
+            cols[0][i] = stringId(tc.getRouteID(), stringIds, strings);
+            cols[1][i] = stringId(tc.getDepartureCity(), stringIds, strings);
+            cols[2][i] = stringId(tc.getArrivalCity(), stringIds, strings);
+            cols[3][i] = tc.getDepartureTime().toSecondOfDay();
+            cols[4][i] = tc.getArrivalTime().toSecondOfDay();
+            cols[5][i] = tc.getTraintype() == null ? -1 : tc.getTraintype().ordinal();
+            cols[6][i] = tc.getDaysMask();
+            cols[7][i] = tc.getArrivalDayOffset();
+            cols[8][i] = tc.getFirstClassRate();
+            cols[9][i] = tc.getSecondClassRate();
+        }
+        int cityCount = cities.size();
+        int[] cityNames = new int[cityCount];
+        for (int c = 0; c < cityCount; c++) cityNames[c] = stringId(cities.nameOf(c), stringIds, strings);
+
+        // string table
+        List<byte[]> encoded = new ArrayList<>(strings.size());
+        long stringBytes = 4;
+        for (String s : strings) {
+            byte[] b = s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+            encoded.add(b);
+            stringBytes += 4 + padded(b == null ? 0 : b.length);
+        }
+        long payloadLength = stringBytes
+                + 4 + 4L * types.length
+                + 4 + 4L * n * COLUMNS
+                + 4L * n
+                + 4 + 4L * cityCount + 4L * (cityCount + 1) + 4L * n * 3;
+        if (payloadLength > Integer.MAX_VALUE - HEADER_BYTES) {
+            throw new IOException("network too large for a snapshot: " + payloadLength + " bytes");
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES + (int) payloadLength).order(ByteOrder.LITTLE_ENDIAN);
+        buf.position(HEADER_BYTES);
+        buf.putInt(strings.size());
+        for (byte[] b : encoded) {
+            if (b == null) {
+                buf.putInt(-1);
+                continue;
+            }
+            buf.putInt(b.length);
+            buf.put(b);
+            buf.position(buf.position() + padded(b.length) - b.length);
+        }
+        putInts(buf, types.length, typeNames);
+        buf.putInt(n);
+        for (int[] col : cols) putInts(buf, col);
+        putInts(buf, net.csvIndexOf());
+        putInts(buf, cityCount, cityNames);
+        putInts(buf, net.departureOffsets());
+        putInts(buf, net.departureEdges());
+        putInts(buf, net.departureCityIds());
+        putInts(buf, net.arrivalCityIds());
+
+        CRC32C crc = new CRC32C();
+        crc.update(buf.array(), HEADER_BYTES, (int) payloadLength);
+        buf.position(0);
+        buf.putInt(MAGIC);
+        buf.putInt(VERSION);
+        buf.putLong(Files.size(source));
+        buf.putLong(Files.getLastModifiedTime(source).toMillis());
+        buf.putLong(hashOf(source));
+        buf.putLong(payloadLength);
+        buf.putLong(crc.getValue());
+        buf.position(0);
+
+        // write next to the target and move it in place, so readers never see half a file
+        if (snapshot.toAbsolutePath().getParent() != null) Files.createDirectories(snapshot.toAbsolutePath().getParent());
+        Path tmp = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) ch.write(buf);
+        }
+        Files.move(tmp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // ---- read ----
+
+    /**
+     * Maps the snapshot and installs it into net. Does not look at the source file; call
+     * isFresh first. Throws IOException when the file is truncated, from another format
+     * version or fails its checksum, and leaves net untouched in that case.
+     */
+    public static void read(Path snapshot, TrainNetwork net) throws IOException {
+        try (FileChannel ch = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            long fileSize = ch.size();
+            if (fileSize < HEADER_BYTES || fileSize > Integer.MAX_VALUE) throw new IOException("not a network snapshot");
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            ByteBuffer buf = map.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (buf.getInt() != MAGIC) throw new IOException("not a network snapshot");
+            int version = buf.getInt();
+            if (version != VERSION) throw new IOException("snapshot version " + version + ", expected " + VERSION);
+            buf.position(buf.position() + 24); // source size, mtime, hash
+            long payloadLength = buf.getLong();
+            long expectedCrc = buf.getLong();
+            if (payloadLength != fileSize - HEADER_BYTES) throw new IOException("snapshot is truncated");
+
+            CRC32C crc = new CRC32C();
+            crc.update(buf.duplicate().position(HEADER_BYTES));
+            if (crc.getValue() != expectedCrc) throw new IOException("snapshot checksum mismatch");
+
+            try {
+                decode(buf, net);
+            } catch (RuntimeException e) {
+                throw new IOException("snapshot is corrupt", e);
+            }
+        }
+    }
+
+    private static void decode(ByteBuffer buf, TrainNetwork net) {
+        String[] strings = new String[buf.getInt()];
+        byte[] scratch = new byte[64];
+        for (int i = 0; i < strings.length; i++) {
+            int len = buf.getInt();
+            if (len < 0) continue;
+            if (scratch.length < len) scratch = new byte[Math.max(len, scratch.length * 2)];
+            buf.get(scratch, 0, len);
+            buf.position(buf.position() + padded(len) - len);
+            strings[i] = new String(scratch, 0, len, StandardCharsets.UTF_8);
+        }
+
+        // types are stored by name, so reordering the enum does not break old snapshots
+        int[] typeNames = getInts(buf, buf.getInt());
+        TrainType[] types = new TrainType[typeNames.length];
+        for (int t = 0; t < types.length; t++) types[t] = TrainType.valueOf(strings[typeNames[t]]);
+
+        int n = buf.getInt();
+        int[][] cols = new int[COLUMNS][];
+        for (int c = 0; c < COLUMNS; c++) cols[c] = getInts(buf, n);
+        int[] order = getInts(buf, n);
+
+        int cityCount = buf.getInt();
+        int[] cityNames = getInts(buf, cityCount);
+        int[] offsets = getInts(buf, cityCount + 1);
+        int[] edges = getInts(buf, n);
+        int[] dep = getInts(buf, n);
+        int[] arr = getInts(buf, n);
+
+        List<TrainConnection> conns = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Set<DayOfWeek> operating = DayMask.toSet(cols[6][i]);
+            conns.add(new TrainConnection(
+                    strings[cols[0][i]],
+                    strings[cols[1][i]],
+                    strings[cols[2][i]],
+                    LocalTime.ofSecondOfDay(cols[3][i]),
+                    LocalTime.ofSecondOfDay(cols[4][i]),
+                    cols[5][i] < 0 ? null : types[cols[5][i]],
+                    operating,
+                    cols[8][i],
+                    cols[9][i],
+                    cols[7][i]));
+        }
+
+        // names are distinct after normalization, so interning them in id order gives the same ids
+        CityIndex index = new CityIndex();
+        for (int c = 0; c < cityCount; c++) index.intern(strings[cityNames[c]]);
+
+        net.installSnapshot(conns, order, index, dep, arr, offsets, edges);
+    }
+
+    // ---- helpers ----
+
+    // CRC32C of the whole source file, read through mappings of at most 1 GB
+    static long hashOf(Path file) throws IOException {
+        CRC32C crc = new CRC32C();
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            for (long pos = 0; pos < size; pos += 1L << 30) {
+                crc.update(ch.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(1L << 30, size - pos)));
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static int stringId(String s, Map<String, Integer> ids, List<String> strings) {
+        Integer id = ids.get(s);
+        if (id != null) return id;
+        ids.put(s, strings.size());
+        strings.add(s);
+        return strings.size() - 1;
+    }
+
+    private static int padded(int len) {
+        return (len + 3) & ~3;
+    }
+
+    private static void putInts(ByteBuffer buf, int[] values) {
+        buf.asIntBuffer().put(values);
+        buf.position(buf.position() + 4 * values.length);
+    }
+
+    private static void putInts(ByteBuffer buf, int count, int[] values) {
+        buf.putInt(count);
+        putInts(buf, values);
+    }
+
+    private static int[] getInts(ByteBuffer buf, int count) {
+        int[] out = new int[count];
+        IntBuffer view = buf.asIntBuffer();
+        view.get(out);
+        buf.position(buf.position() + 4 * count);
+        return out;
+    }
+}
@@ -1,26 +1,150 @@
 package infra;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.time.DayOfWeek;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
 
+import domain.DayMask;
 import domain.Route;
 import domain.TrainConnection;
 
 public class TrainNetwork {
 
-    private List<TrainConnection> allConnections = new ArrayList<>();
+    // every completed load gets a new version, unique across instances
+    private static final AtomicLong VERSIONS = new AtomicLong();
+    private volatile long version;
+    // set once the network is published through LiveTrainNetwork; loading it again is refused
+    private volatile boolean readOnly;
 
-    
-    private final Map<String, List<Route>> routesByKey = new HashMap<>();
+    private List<TrainConnection> allConnections = new ArrayList<>();
 
     
-    private final Map<String, List<TrainConnection>> byDeparture = new HashMap<>();
+    private Map<String, List<Route>> routesByKey = new HashMap<>();
+
+    // one Route per connection, same order as allConnections
+    private List<Route> routeOfConnection = new ArrayList<>();
+
+    // normalized departure city -> immutable routes leaving it, plus every route flattened once
+    private Map<String, List<Route>> routesFromCity = new HashMap<>();
+    private List<Route> allRoutes = List.of();
+    // routes running on each weekday (index 0 = Monday), CSV order
+    private List<List<Route>> routesByDay = List.of();
+
+    // connections sorted by time of day they depart at (connection scan timetable).
+    // A connection's position in this order is its connection id in the int API below.
+    private List<TrainConnection> connectionsByDepartureTime = List.of();
+    private List<Route> routesByDepartureTime = List.of();
+    // connection id -> index in allConnections
+    private int[] csvIndexOf = new int[0];
+    // per weekday (index 0 = Monday) a bitset over connection ids of the connections running that day
+    private long[][] serviceByDay = new long[7][0];
+
+    // normalized city name -> dense city id
+    private CityIndex cities = new CityIndex();
+
+    // graph in CSR form: departures of city c are the connection ids
+    // departureEdges[departureOffsets[c] .. departureOffsets[c + 1]), ascending by departure time
+    private int[] departureOffsets = new int[1];
+    private int[] departureEdges = new int[0];
+    private int[] departureCityOf = new int[0];
+    private int[] arrivalCityOf = new int[0];
+    // reverse adjacency, the same for arrivals: arrivalEdges[arrivalOffsets[c] .. arrivalOffsets[c + 1])
+    // are the connections arriving in c, ascending by arrival time of day
+    private int[] arrivalOffsets = new int[1];
+    private int[] arrivalEdges = new int[0];
+
+    // per city id, the same departures as TrainConnections (for the string API)
+    // the same slices with each city's departures in CSV order
+    private int[] departureEdgesInCsvOrder = new int[0];
+    private List<List<TrainConnection>> departuresByCity = List.of();
+
+    // min legs / min travel time between cities, for pruning searches
+    private CityBounds bounds = new CityBounds(0, new int[0], new int[0], new int[0]);
+    // policy-valid changes between connections, built on first use for each version
+    private volatile TransferGraph transfers;
 
     public void load(String csvPath) throws IOException {
+        checkWritable();
         this.allConnections = CsvLoader.load(csvPath);
         rebuildRoutesIndex();
-        rebuildDepartureIndex();
+        rebuildDepartureTimeIndex(false);
+        rebuildCityGraph();
+        version = VERSIONS.incrementAndGet();
+    }
+
+    // same network as load(), with parsing and the route indexes built on the common pool
+    public void loadParallel(String csvPath) throws IOException {
+        loadParallel(csvPath, ForkJoinPool.commonPool());
+    }
+
+    public void loadParallel(String csvPath, ForkJoinPool pool) throws IOException {
+        checkWritable();
+        List<List<TrainConnection>> chunks = CsvLoader.loadChunks(Path.of(csvPath), CsvLoader.PRINT_ERRORS, pool);
+        RouteIndexPart merged = pool.invoke(new IndexChunks(chunks, 0, chunks.size()));
+        this.allConnections = merged.connections;
+        installRoutesIndex(merged);
+        rebuildDepartureTimeIndex(true);
+        rebuildCityGraph();
+        version = VERSIONS.incrementAndGet();
+    }
+
+    /**
+     * Loads from the binary snapshot of csvPath when it is still fresh (same source size and
+     * mtime, or same content hash), otherwise parses the CSV and rewrites the snapshot. A failed
+     * write is reported on stderr and does not fail the load.
+     * @return true when the network came from the snapshot
+     */
+    public boolean loadCached(String csvPath) throws IOException {
+        return loadCached(csvPath, NetworkSnapshot.defaultPathFor(Path.of(csvPath)));
+    }
+
+    public boolean loadCached(String csvPath, Path snapshot) throws IOException {
+        Path source = Path.of(csvPath);
+        if (NetworkSnapshot.isFresh(snapshot, source)) {
+            try {
+                NetworkSnapshot.read(snapshot, this);
+                return true;
+            } catch (IOException e) {
+                // corrupt or unreadable snapshot, rebuild it from the CSV below
+            }
+        }
+        load(csvPath);
+        try {
+            writeSnapshot(snapshot, source);
+        } catch (IOException e) {
+            // the snapshot is only a cache; the CSV loaded fine, so keep the network
+            System.err.println("Could not write snapshot " + snapshot + ": " + e.getMessage());
+        }
+        return false;
+    }
+
+    // writes the loaded network, stamped with the size, mtime and hash of its source CSV
+    public void writeSnapshot(Path snapshot, Path source) throws IOException {
+        NetworkSnapshot.write(this, snapshot, source);
+    }
+
+    // version of the loaded data, 0 before the first load; changes on every load
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    // after this, load methods throw; searches holding this instance never see it change
+    void markReadOnly() {
+        readOnly = true;
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new IllegalStateException("network is read-only, reload it through LiveTrainNetwork");
+        }
     }
 
     public List<TrainConnection> getAllConnections() {
@@ -33,149 +157,522 @@ public class TrainNetwork {
         return (list == null || list.isEmpty()) ? null : list.get(0);
     }
 
-    // return all routes for a given city pair. 
+    // return all routes for a given city pair (already immutable). 
     public List<Route> getRoutes(String departureCity, String arrivalCity) {
         List<Route> list = routesByKey.get(keyFor(departureCity, arrivalCity));
-        return (list == null) ? List.of() : Collections.unmodifiableList(list);
+        return (list == null) ? List.of() : list;
     }
 
-    // get routes for the pair of cities
+    // every route in the network, cached at load (immutable, CSV order)
     public List<Route> getAllRoutes() {
-        List<Route> out = new ArrayList<>();
-        for (List<Route> list : routesByKey.values()) {
-            out.addAll(list);
+        return allRoutes;
+    }
+
+    // routes that run on the given weekday (immutable, CSV order), bucketed once per load
+    public List<Route> getRoutesOn(DayOfWeek day) {
+        return routesByDay.isEmpty() ? List.of() : routesByDay.get(day.getValue() - 1);
+    }
+
+    // all connections ordered by departure time of day, built once per load
+    public List<TrainConnection> getConnectionsByDepartureTime() {
+        return connectionsByDepartureTime;
+    }
+
+    // Route view of getConnectionsByDepartureTime(), same index for the same connection
+    public List<Route> getRoutesByDepartureTime() {
+        return routesByDepartureTime;
+    }
+
+    // ---- int API: cities and connections by id ----
+
+    public CityIndex getCityIndex() {
+        return cities;
+    }
+
+    public int getCityCount() {
+        return cities.size();
+    }
+
+    // city id for a name, -1 if the city is not in the network
+    public int cityId(String city) {
+        return cities.idOf(city);
+    }
+
+    public String cityName(int cityId) {
+        return cities.nameOf(cityId);
+    }
+
+    // lower bounds on legs and minutes between any two cities, built with the graph
+    public CityBounds getCityBounds() {
+        return bounds;
+    }
+
+    // the changes between connections the booking rules allow, built once per loaded version
+    public TransferGraph getTransferGraph() {
+        TransferGraph g = transfers;
+        if (g == null || g.networkVersion != version) {
+            synchronized (this) {
+                g = transfers;
+                if (g == null || g.networkVersion != version) {
+                    transfers = g = TransferGraph.build(this);
+                }
+            }
         }
-        return out;
+        return g;
+    }
+
+    public int getConnectionCount() {
+        return connectionsByDepartureTime.size();
+    }
+
+    public TrainConnection connection(int connectionId) {
+        return connectionsByDepartureTime.get(connectionId);
+    }
+
+    public Route route(int connectionId) {
+        return routesByDepartureTime.get(connectionId);
+    }
+
+    // whether the connection runs on that weekday (its daysOfOperation), one bit test
+    public boolean runsOn(int connectionId, DayOfWeek day) {
+        return (serviceByDay[day.getValue() - 1][connectionId >>> 6] & (1L << connectionId)) != 0;
+    }
+
+    public int departureCityOf(int connectionId) {
+        return departureCityOf[connectionId];
+    }
+
+    public int arrivalCityOf(int connectionId) {
+        return arrivalCityOf[connectionId];
+    }
+
+    // departures of a city are departureEdge(k) for departuresStart(c) <= k < departuresEnd(c)
+    public int departuresStart(int cityId) {
+        return departureOffsets[cityId];
+    }
+
+    public int departuresEnd(int cityId) {
+        return departureOffsets[cityId + 1];
+    }
+
+    public int departureEdge(int k) {
+        return departureEdges[k];
+    }
+
+    // departureEdge's slice of the city reordered as in the CSV, for results that keep file order
+    public int departureEdgeInCsvOrder(int k) {
+        return departureEdgesInCsvOrder[k];
+    }
+
+    // arrivals into a city are arrivalEdge(k) for arrivalsStart(c) <= k < arrivalsEnd(c)
+    public int arrivalsStart(int cityId) {
+        return arrivalOffsets[cityId];
+    }
+
+    public int arrivalsEnd(int cityId) {
+        return arrivalOffsets[cityId + 1];
+    }
+
+    public int arrivalEdge(int k) {
+        return arrivalEdges[k];
+    }
+
+    // the int arrays above (departure CSR in both orders, arrival index, cities of each connection)
+    // and the service bitsets; CityBounds and the TransferGraph report their own
+    public long indexMemoryBytes() {
+        long bytes = 4L * (departureOffsets.length + departureEdges.length + departureEdgesInCsvOrder.length
+                + departureCityOf.length + arrivalCityOf.length + arrivalOffsets.length + arrivalEdges.length);
+        for (long[] day : serviceByDay) bytes += 8L * day.length;
+        return bytes;
     }
 
-    // departuring connections raw connections list
+    // ---- string API, thin wrappers over the city ids ----
+
+    // connections departing from a city (immutable, CSV order); the searches use the
+    // time-sorted departuresStart/departureEdge slices instead
     public List<TrainConnection> getDeparturesFrom(String city) {
-        if (city == null) return List.of();
-        String key = city.toLowerCase(Locale.ROOT).trim();
-        return byDeparture.getOrDefault(key, List.of());
+        int id = cityId(city);
+        return id < 0 ? List.of() : departuresByCity.get(id);
     }
 
-    // Routes that depart from a given city filters the flattened list
-    
+    // Routes that depart from a given city (immutable, CSV order)
     public List<Route> getRoutesFrom(String city) {
         if (city == null) return List.of();
-        String want = city.trim();
-
-        List<Route> out = new ArrayList<>();
-        // routesByKey holds List<Route> for each pair; scan all lists
-        for (List<Route> list : routesByKey.values()) {
-            for (Route r : list) {
-                if (r.getDepartureCity() != null
-                        && r.getDepartureCity().equalsIgnoreCase(want)) {
-                    out.add(r);
-                }
-            }
-        }
-        return out;
+        return routesFromCity.getOrDefault(CityIndex.normalize(city), List.of());
     }
 
     // Indirect connections 
    // Finds all possible paths between 'from' and 'to' with up to maxStops transfers
     public List<List<TrainConnection>> findCityChains(String from, String to, int maxStops) {
-        List<List<TrainConnection>> results = new ArrayList<>();
+        if (from == null || to == null) return new ArrayList<>();
+        int fromId = cityId(from);
+        int toId = cityId(to);
+        if (fromId < 0 || toId < 0) return new ArrayList<>();
+        return findCityChains(fromId, toId, maxStops);
+    }
 
-        if (from == null || to == null || maxStops < 1) return results;
+    // same as above over city ids
+    public List<List<TrainConnection>> findCityChains(int from, int to, int maxStops) {
+        List<List<TrainConnection>> results = new ArrayList<>();
 
-        // Normalize
-        from = from.trim().toLowerCase(Locale.ROOT);
-        to = to.trim().toLowerCase(Locale.ROOT);
+        if (maxStops < 1) return results;
 
-        // BFS through the network
-        Queue<List<TrainConnection>> queue = new LinkedList<>();
+        // BFS through the network. Slot i of these arrays is a path: its last connection, the
+        // slot of the path it extends (-1 for a first leg), its length, and bit (city & 63) of
+        // every city it departs from. Paths share their prefixes, so each step adds one slot.
+        int[] conn = new int[64];
+        int[] parent = new int[64];
+        int[] length = new int[64];
+        long[] cityBits = new long[64];
+        int head = 0, tail = 0;
 
         // Start with all direct departures from the starting city
-        for (TrainConnection conn : getDeparturesFrom(from)) {
-            List<TrainConnection> initialPath = new ArrayList<>();
-            initialPath.add(conn);
-            queue.add(initialPath);
+        for (int k = departuresStart(from); k < departuresEnd(from); k++) {
+            if (tail == conn.length) {
+                conn = Arrays.copyOf(conn, tail * 2);
+                parent = Arrays.copyOf(parent, tail * 2);
+                length = Arrays.copyOf(length, tail * 2);
+                cityBits = Arrays.copyOf(cityBits, tail * 2);
+            }
+            conn[tail] = departureEdge(k);
+            parent[tail] = -1;
+            length[tail] = 1;
+            cityBits[tail] = 1L << (from & 63);
+            tail++;
         }
 
-        while (!queue.isEmpty()) {
-            List<TrainConnection> path = queue.poll();
-            TrainConnection last = path.get(path.size() - 1);
-
-            String arrival = last.getArrivalCity().toLowerCase(Locale.ROOT);
+        while (head < tail) {
+            int path = head++;
+            int arrival = arrivalCityOf[conn[path]];
 
             // If we reached the destination, store this path
-            if (arrival.equals(to)) {
-                results.add(new ArrayList<>(path));
+            if (arrival == to) {
+                TrainConnection[] chain = new TrainConnection[length[path]];
+                for (int p = path; p >= 0; p = parent[p]) chain[length[p] - 1] = connection(conn[p]);
+                results.add(new ArrayList<>(Arrays.asList(chain)));
                 continue;
             }
 
             // Limit number of stops 
-            if (path.size() > maxStops) continue;
+            if (length[path] > maxStops) continue;
 
             // Explore further connections from the current arrival city
-            for (TrainConnection next : getDeparturesFrom(arrival)) {
+            long bits = cityBits[path] | 1L << (arrival & 63);
+            for (int k = departuresStart(arrival); k < departuresEnd(arrival); k++) {
+                int next = departureEdge(k);
                 // Avoid cycles, don’t revisit cities already in the path
-                boolean alreadyVisited = path.stream()
-                    .anyMatch(tc -> tc.getDepartureCity().equalsIgnoreCase(next.getArrivalCity()));
-                if (alreadyVisited) continue;
-
-                // Build a new extended path
-                List<TrainConnection> newPath = new ArrayList<>(path);
-                newPath.add(next);
-                queue.add(newPath);
+                int nextCity = arrivalCityOf[next];
+                if ((cityBits[path] & 1L << (nextCity & 63)) != 0) {
+                    boolean alreadyVisited = false;
+                    for (int p = path; p >= 0; p = parent[p]) {
+                        if (departureCityOf[conn[p]] == nextCity) {
+                            alreadyVisited = true;
+                            break;
+                        }
+                    }
+                    if (alreadyVisited) continue;
+                }
+
+                // Extend the path by one slot
+                if (tail == conn.length) {
+                    conn = Arrays.copyOf(conn, tail * 2);
+                    parent = Arrays.copyOf(parent, tail * 2);
+                    length = Arrays.copyOf(length, tail * 2);
+                    cityBits = Arrays.copyOf(cityBits, tail * 2);
+                }
+                conn[tail] = next;
+                parent[tail] = path;
+                length[tail] = length[path] + 1;
+                cityBits[tail] = bits;
+                tail++;
             }
         }
 
         return results;
     }
 
+    // ---- snapshot support (NetworkSnapshot) ----
+
+    List<TrainConnection> connectionsInCsvOrder() {
+        return allConnections;
+    }
+
+    int[] csvIndexOf() {
+        return csvIndexOf;
+    }
+
+    int[] departureCityIds() {
+        return departureCityOf;
+    }
+
+    int[] arrivalCityIds() {
+        return arrivalCityOf;
+    }
+
+    int[] departureOffsets() {
+        return departureOffsets;
+    }
+
+    int[] departureEdges() {
+        return departureEdges;
+    }
+
+    // installs a network read back from a snapshot; only the route lists are rebuilt
+    void installSnapshot(List<TrainConnection> csvOrder, int[] order, CityIndex index,
+                         int[] dep, int[] arr, int[] offsets, int[] edges) {
+        checkWritable();
+        this.allConnections = csvOrder;
+        rebuildRoutesIndex();
+        installDepartureOrder(order);
+        installCityGraph(index, dep, arr, offsets, edges);
+        version = VERSIONS.incrementAndGet();
+    }
+
     // Index builders
 
     private void rebuildRoutesIndex() {
-        routesByKey.clear();
-
+        RouteIndexPart part = new RouteIndexPart();
         for (TrainConnection tc : allConnections) {
-            // Convert Set<DayOfWeek> → "MTWTFSS"
-            String daysStr;
-            if (tc.getDaysOfOperation() != null) {
-                StringBuilder sb = new StringBuilder(7);
-                for (DayOfWeek d : DayOfWeek.values()) {
-                    sb.append(tc.getDaysOfOperation().contains(d) ? d.name().charAt(0) : '-');
+            part.add(tc);
+        }
+        installRoutesIndex(part);
+    }
+
+    // fresh maps instead of clearing the old ones, so each index is replaced in one write
+    private void installRoutesIndex(RouteIndexPart part) {
+        Map<String, List<Route>> byKey = new HashMap<>(part.byKey.size() * 2);
+        for (Map.Entry<String, List<Route>> e : part.byKey.entrySet()) {
+            byKey.put(e.getKey(), Collections.unmodifiableList(e.getValue()));
+        }
+        Map<String, List<Route>> fromCity = new HashMap<>(part.fromCity.size() * 2);
+        for (Map.Entry<String, List<Route>> e : part.fromCity.entrySet()) {
+            fromCity.put(e.getKey(), Collections.unmodifiableList(e.getValue()));
+        }
+        routeOfConnection = part.routes;
+        routesByKey = byKey;
+        routesFromCity = fromCity;
+        allRoutes = Collections.unmodifiableList(new ArrayList<>(routeOfConnection));
+        routesByDay = bucketByDay(allRoutes);
+    }
+
+    private static List<List<Route>> bucketByDay(List<Route> routes) {
+        List<List<Route>> byDay = new ArrayList<>(7);
+        for (int d = 0; d < 7; d++) byDay.add(new ArrayList<>());
+        for (Route r : routes) {
+            int mask = r.getDaysMask();
+            for (int d = 0; d < 7; d++) {
+                if ((mask & (1 << d)) != 0) byDay.get(d).add(r);
+            }
+        }
+        for (int d = 0; d < 7; d++) byDay.set(d, Collections.unmodifiableList(byDay.get(d)));
+        return Collections.unmodifiableList(byDay);
+    }
+
+    // "HH:mm" for every minute and "MTWTFSS" for every day mask, shared by all routes
+    private static final String[] CLOCK = new String[24 * 60];
+    private static final String[] DAY_STRINGS = new String[DayMask.ALL + 1];
+    static {
+        for (int m = 0; m < CLOCK.length; m++) CLOCK[m] = String.format("%02d:%02d", m / 60, m % 60);
+        for (int mask = 0; mask < DAY_STRINGS.length; mask++) DAY_STRINGS[mask] = DayMask.toPattern(mask);
+    }
+
+    // Full Route built from a connection
+    private static Route toRoute(TrainConnection tc) {
+        // Convert Set<DayOfWeek> → "MTWTFSS"
+        String daysStr = tc.getDaysOfOperation() != null
+                ? DAY_STRINGS[tc.getDaysMask()]
+                : "-------";
+
+        return new Route(
+                tc.getRouteID(),
+                tc.getDepartureCity(),
+                tc.getArrivalCity(),
+                clock(tc.getDepartureTime()),   // "HH:mm"
+                clock(tc.getArrivalTime()),     // "HH:mm"
+                tc.getTraintype().name(),           // enum → String
+                daysStr,
+                tc.getFirstClassRate(),
+                tc.getSecondClassRate()
+        );
+    }
+
+    // same text as LocalTime.toString()
+    private static String clock(java.time.LocalTime t) {
+        return t.getSecond() == 0 && t.getNano() == 0 ? CLOCK[t.getHour() * 60 + t.getMinute()] : t.toString();
+    }
+
+    // Route indexes for a run of consecutive connections. Parts are only ever appended
+    // left-to-right, so every list keeps CSV order.
+    private static final class RouteIndexPart {
+        final List<TrainConnection> connections = new ArrayList<>();
+        final List<Route> routes = new ArrayList<>();
+        final Map<String, List<Route>> byKey = new HashMap<>();
+        final Map<String, List<Route>> fromCity = new HashMap<>();
+
+        void add(TrainConnection tc) {
+            Route route = toRoute(tc);
+            connections.add(tc);
+            routes.add(route);
+            byKey.computeIfAbsent(keyFor(tc.getDepartureCity(), tc.getArrivalCity()), k -> new ArrayList<>()).add(route);
+            fromCity.computeIfAbsent(CityIndex.normalize(tc.getDepartureCity()), k -> new ArrayList<>()).add(route);
+        }
+
+        // appends a part covering the connections right after this one
+        RouteIndexPart append(RouteIndexPart next) {
+            connections.addAll(next.connections);
+            routes.addAll(next.routes);
+            next.byKey.forEach((k, v) -> byKey.merge(k, v, RouteIndexPart::concat));
+            next.fromCity.forEach((k, v) -> fromCity.merge(k, v, RouteIndexPart::concat));
+            return this;
+        }
+
+        private static List<Route> concat(List<Route> a, List<Route> b) {
+            a.addAll(b);
+            return a;
+        }
+    }
+
+    // builds one part per chunk in parallel and merges neighbours pairwise; each task owns
+    // the parts it merges, so no locking is needed
+    @SuppressWarnings("serial")
+    private static final class IndexChunks extends RecursiveTask<RouteIndexPart> {
+        private final List<List<TrainConnection>> chunks;
+        private final int from;
+        private final int to;
+
+        IndexChunks(List<List<TrainConnection>> chunks, int from, int to) {
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected RouteIndexPart compute() {
+            if (to - from <= 1) {
+                RouteIndexPart part = new RouteIndexPart();
+                if (from < to) {
+                    for (TrainConnection tc : chunks.get(from)) part.add(tc);
                 }
-                daysStr = sb.toString();
-            } else {
-                daysStr = "-------";
+                return part;
             }
+            int mid = (from + to) >>> 1;
+            IndexChunks right = new IndexChunks(chunks, mid, to);
+            right.fork();
+            RouteIndexPart left = new IndexChunks(chunks, from, mid).compute();
+            return left.append(right.join());
+        }
+    }
 
-            // Build a full Route from the connection
-            Route route = new Route(
-                    tc.getRouteID(),
-                    tc.getDepartureCity(),
-                    tc.getArrivalCity(),
-                    tc.getDepartureTime().toString(),   // "HH:mm"
-                    tc.getArrivalTime().toString(),     // "HH:mm"
-                    tc.getTraintype().name(),           // enum → String
-                    daysStr,
-                    tc.getFirstClassRate(),
-                    tc.getSecondClassRate()
-            );
+    // sorts connection indexes by departure time once, so a scan is a single pass over an array.
+    // Keys are (time of day, csv index), which keeps ties in CSV order like a stable sort.
+    private void rebuildDepartureTimeIndex(boolean parallel) {
+        int n = allConnections.size();
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = ((long) allConnections.get(i).getDepartureTime().toSecondOfDay() << 32) | i;
+        }
+        if (parallel) Arrays.parallelSort(keys); else Arrays.sort(keys);
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) order[i] = (int) keys[i];
+        installDepartureOrder(order);
+    }
 
-            String key = keyFor(tc.getDepartureCity(), tc.getArrivalCity());
-            routesByKey.computeIfAbsent(key, k -> new ArrayList<>()).add(route); 
+    private void installDepartureOrder(int[] order) {
+        int n = order.length;
+        TrainConnection[] conns = new TrainConnection[n];
+        Route[] routes = new Route[n];
+        for (int i = 0; i < n; i++) {
+            conns[i] = allConnections.get(order[i]);
+            routes[i] = routeOfConnection.get(order[i]);
+        }
+        long[][] service = new long[7][(n + 63) >>> 6];
+        for (int i = 0; i < n; i++) {
+            int mask = conns[i].getDaysMask();
+            for (int d = 0; d < 7; d++) {
+                if ((mask & (1 << d)) != 0) service[d][i >>> 6] |= 1L << i;
+            }
         }
+        this.csvIndexOf = order;
+        this.serviceByDay = service;
+        this.connectionsByDepartureTime = Collections.unmodifiableList(Arrays.asList(conns));
+        this.routesByDepartureTime = Collections.unmodifiableList(Arrays.asList(routes));
+    }
 
-        for (Map.Entry<String, List<Route>> e : routesByKey.entrySet()) {
-            e.setValue(Collections.unmodifiableList(e.getValue()));
+    // interns every city and lays the departures out as offset + edge arrays
+    private void rebuildCityGraph() {
+        CityIndex index = new CityIndex();
+        int n = connectionsByDepartureTime.size();
+        int[] dep = new int[n];
+        int[] arr = new int[n];
+        for (int i = 0; i < n; i++) {
+            TrainConnection tc = connectionsByDepartureTime.get(i);
+            dep[i] = index.intern(tc.getDepartureCity());
+            arr[i] = index.intern(tc.getArrivalCity());
         }
+
+        int cityCount = index.size();
+        int[] offsets = new int[cityCount + 1];
+        for (int i = 0; i < n; i++) offsets[dep[i] + 1]++;
+        for (int c = 0; c < cityCount; c++) offsets[c + 1] += offsets[c];
+
+        // ids are visited in departure-time order, so every city's slice stays time-sorted
+        int[] edges = new int[n];
+        int[] fill = Arrays.copyOf(offsets, cityCount);
+        for (int i = 0; i < n; i++) edges[fill[dep[i]]++] = i;
+
+        installCityGraph(index, dep, arr, offsets, edges);
     }
 
-    private void rebuildDepartureIndex() {
-        byDeparture.clear();
-        for (TrainConnection tc : allConnections) {
-            String key = tc.getDepartureCity() == null ? "" : tc.getDepartureCity().toLowerCase(Locale.ROOT).trim();
-            byDeparture.computeIfAbsent(key, k -> new ArrayList<>()).add(tc);
+    private void installCityGraph(CityIndex index, int[] dep, int[] arr, int[] offsets, int[] edges) {
+        int cityCount = index.size();
+        // every city's departures in CSV order as well, for the string API and the BFS engine
+        int[] idOfCsvRow = new int[dep.length];
+        for (int i = 0; i < dep.length; i++) idOfCsvRow[csvIndexOf[i]] = i;
+        int[] csvEdges = new int[dep.length];
+        int[] csvFill = Arrays.copyOf(offsets, cityCount);
+        for (int id : idOfCsvRow) csvEdges[csvFill[dep[id]]++] = id;
+        List<List<TrainConnection>> byCity = new ArrayList<>(cityCount);
+        for (int c = 0; c < cityCount; c++) {
+            TrainConnection[] out = new TrainConnection[offsets[c + 1] - offsets[c]];
+            for (int k = offsets[c]; k < offsets[c + 1]; k++) out[k - offsets[c]] = connectionsByDepartureTime.get(csvEdges[k]);
+            byCity.add(Collections.unmodifiableList(Arrays.asList(out)));
         }
-        for (Map.Entry<String, List<TrainConnection>> e : byDeparture.entrySet()) {
-            e.setValue(Collections.unmodifiableList(e.getValue()));
+
+        // shortest trip per connection; Route durations never exceed the connection's own
+        int[] minutes = new int[dep.length];
+        for (int i = 0; i < minutes.length; i++) {
+            minutes[i] = Math.min(routesByDepartureTime.get(i).getDurationMinutes(),
+                    connectionsByDepartureTime.get(i).getTripMinutes());
         }
+        CityBounds cityBounds = new CityBounds(cityCount, dep, arr, minutes);
+
+        // ids sorted by (arrival time of day, id), then dealt out per arrival city
+        int n = arr.length;
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = ((long) routesByDepartureTime.get(i).getArrivalMinuteOfDay() << 32) | i;
+        }
+        Arrays.sort(keys);
+        int[] inOffsets = new int[cityCount + 1];
+        for (int i = 0; i < n; i++) inOffsets[arr[i] + 1]++;
+        for (int c = 0; c < cityCount; c++) inOffsets[c + 1] += inOffsets[c];
+        int[] inEdges = new int[n];
+        int[] inFill = Arrays.copyOf(inOffsets, cityCount);
+        for (long key : keys) {
+            int i = (int) key;
+            inEdges[inFill[arr[i]]++] = i;
+        }
+
+        this.cities = index;
+        this.departureCityOf = dep;
+        this.arrivalCityOf = arr;
+        this.departureOffsets = offsets;
+        this.departureEdges = edges;
+        this.arrivalOffsets = inOffsets;
+        this.arrivalEdges = inEdges;
+        this.departureEdgesInCsvOrder = csvEdges;
+        this.departuresByCity = byCity;
+        this.bounds = cityBounds;
     }
 
     private static String keyFor(String from, String to) {
@@ -0,0 +1,156 @@
+package infra;
+
+import domain.BookingPolicies;
+import domain.Route;
+import domain.TimeUtil;
+import java.util.Arrays;
+
+/**
+ * The changes between trains that the booking rules allow, worked out once per network load.
+ *
+ * Every connection is an arrival event at its arrival city and every connection leaving that
+ * city a departure event; an edge joins the two when BookingPolicies.isLayoverAllowed accepts
+ * the pair (same city, minimum transfer time, longest layover for the time of day). Searches
+ * follow the edges instead of checking every departure of the city against the rules.
+ *
+ * CSR over connection ids: the connections that connection i may change to are
+ * edge(k) for start(i) <= k < end(i), ascending by id and so in the order of the city's
+ * departures; gap(k) is the layover in minutes. inCsvOrder(k) walks the same range in the
+ * order of the CSV rows instead, for searches whose results keep file order. Only the
+ * departures within the longest layover after the arrival are checked while building.
+ */
+public final class TransferGraph {
+
+    final long networkVersion;    // TrainNetwork.getVersion() it was built from
+    private final int[] offsets;
+    private final int[] edges;
+    private final short[] gaps;   // layovers never exceed a day
+    private final int[] csvOrder; // positions of each range's edges, by CSV row
+
+    private TransferGraph(long networkVersion, int[] offsets, int[] edges, short[] gaps, int[] csvOrder) {
+        this.networkVersion = networkVersion;
+        this.offsets = offsets;
+        this.edges = edges;
+        this.gaps = gaps;
+        this.csvOrder = csvOrder;
+    }
+
+    static TransferGraph build(TrainNetwork net) {
+        int n = net.getConnectionCount();
+        int maxLayover = BookingPolicies.maxLayoverMinutes();
+        int[] offsets = new int[n + 1];
+        int[] edges = new int[Math.max(16, n)];
+        short[] gaps = new short[edges.length];
+        int size = 0;
+        for (int i = 0; i < n; i++) {
+            Route arriving = net.route(i);
+            int city = net.arrivalCityOf(i);
+            int arr = arriving.getArrivalMinuteOfDay();
+            int from = size;
+            // departures from arr to arr + maxLayover, past midnight from the start of the slice again
+            int lo = net.departuresStart(city), hi = net.departuresEnd(city);
+            int first = firstDepartureAtOrAfter(net, lo, hi, arr);
+            int wrap = arr + maxLayover - 24 * 60;
+            for (int k = 0; k < hi - lo; k++) {
+                int e = first + k < hi ? first + k : lo + (first + k - hi);
+                int j = net.departureEdge(e);
+                Route leaving = net.route(j);
+                int dep = leaving.getDepartureMinuteOfDay();
+                if (first + k < hi ? dep > arr + maxLayover : dep > wrap) {
+                    break;
+                }
+                if (!BookingPolicies.isLayoverAllowed(arriving, leaving)) {
+                    continue;
+                }
+                if (size == edges.length) {
+                    edges = Arrays.copyOf(edges, size * 2);
+                    gaps = Arrays.copyOf(gaps, size * 2);
+                }
+                edges[size] = j;
+                gaps[size] = (short) TimeUtil.diff(arr, dep);
+                size++;
+            }
+            sortById(edges, gaps, from, size);
+            offsets[i + 1] = size;
+        }
+        edges = Arrays.copyOf(edges, size);
+        return new TransferGraph(net.getVersion(), offsets, edges, Arrays.copyOf(gaps, size),
+                csvOrder(offsets, edges, net.csvIndexOf()));
+    }
+
+    private static int[] csvOrder(int[] offsets, int[] edges, int[] csvIndexOf) {
+        int[] order = new int[edges.length];
+        for (int i = 0; i + 1 < offsets.length; i++) {
+            // a handful per connection, insertion sort by CSV row
+            for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+                int j = k - 1;
+                while (j >= offsets[i] && csvIndexOf[edges[order[j]]] > csvIndexOf[edges[k]]) {
+                    order[j + 1] = order[j];
+                    j--;
+                }
+                order[j + 1] = k;
+            }
+        }
+        return order;
+    }
+
+    private static int firstDepartureAtOrAfter(TrainNetwork net, int lo, int hi, int minute) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (net.route(net.departureEdge(mid)).getDepartureMinuteOfDay() < minute) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // the edges of one connection came out in layover order; ids are wanted (a handful, insertion sort)
+    private static void sortById(int[] edges, short[] gaps, int from, int to) {
+        for (int i = from + 1; i < to; i++) {
+            int e = edges[i];
+            short g = gaps[i];
+            int j = i - 1;
+            while (j >= from && edges[j] > e) {
+                edges[j + 1] = edges[j];
+                gaps[j + 1] = gaps[j];
+                j--;
+            }
+            edges[j + 1] = e;
+            gaps[j + 1] = g;
+        }
+    }
+
+    public int start(int connectionId) {
+        return offsets[connectionId];
+    }
+
+    public int end(int connectionId) {
+        return offsets[connectionId + 1];
+    }
+
+    public int edge(int k) {
+        return edges[k];
+    }
+
+    public int gap(int k) {
+        return gaps[k];
+    }
+
+    // for start(i) <= k < end(i): the position of the k-th of i's edges in CSV order, to pass
+    // to edge and gap
+    public int inCsvOrder(int k) {
+        return csvOrder[k];
+    }
+
+    // whether the rules allow changing from one connection to the other
+    public boolean allows(int fromConnection, int toConnection) {
+        return Arrays.binarySearch(edges, offsets[fromConnection], offsets[fromConnection + 1], toConnection) >= 0;
+    }
+
+    public int edgeCount() {
+        return edges.length;
+    }
+
+    public long memoryBytes() {
+        return 4L * offsets.length + 4L * edges.length + 2L * gaps.length + 4L * csvOrder.length;
+    }
+}
@@ -0,0 +1,108 @@
+package infra.gen;
+
+import domain.Client;
+import domain.Itinerary;
+import domain.Leg;
+import domain.Reservation;
+import domain.Route;
+import domain.TimeUtil;
+import domain.Trip;
+import infra.ClientRepository;
+import infra.ReservationRepository;
+import infra.TrainNetwork;
+import infra.TripRepository;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Seeds clients, trips and reservations for booking-path load tests.
+ * Goes through the repository interfaces, so the same data can be written to SQLite
+ * (RepositoryFactory.Mode.SQLITE) or kept in memory. Names, itineraries, dates and fare
+ * classes depend only on the seed and the booking date; the generated ids are random UUIDs
+ * as usual.
+ */
+public final class BookingLoadSeeder {
+
+    // booking date when none is given, fixed so that runs can be compared
+    public static final LocalDate DEFAULT_BOOKING_DATE = LocalDate.of(2025, 1, 1);
+
+    private final ClientRepository clients;
+    private final TripRepository trips;
+    private final ReservationRepository reservations;
+
+    public BookingLoadSeeder(ClientRepository clients, TripRepository trips, ReservationRepository reservations) {
+        this.clients = clients;
+        this.trips = trips;
+        this.reservations = reservations;
+    }
+
+    public int seed(TrainNetwork net, long seed, int clientCount, int tripsPerClient, int maxPassengers) {
+        return seed(net, seed, DEFAULT_BOOKING_DATE, clientCount, tripsPerClient, maxPassengers);
+    }
+
+    /**
+     * Creates clientCount clients with tripsPerClient trips each and one reservation per passenger.
+     * Itineraries are one or two legs taken from the network's timetable; trips are dated 1 to 90
+     * days after bookingDate.
+     * @return number of reservations written
+     */
+    public int seed(TrainNetwork net, long seed, LocalDate bookingDate, int clientCount, int tripsPerClient,
+            int maxPassengers) {
+        List<Route> routes = net.getAllRoutes();
+        if (routes.isEmpty()) {
+            throw new IllegalArgumentException("network has no routes, load it first");
+        }
+        if (bookingDate == null) {
+            throw new IllegalArgumentException("bookingDate is required");
+        }
+        if (clientCount < 0 || tripsPerClient < 0 || maxPassengers < 1) {
+            throw new IllegalArgumentException("counts must be >= 0 and maxPassengers >= 1");
+        }
+
+        Random rnd = new Random(seed);
+        int written = 0;
+
+        for (int c = 0; c < clientCount; c++) {
+            Client client = new Client("Load Client " + c, "client" + c + "@load.test",
+                    String.format("555-%04d", c % 10000));
+            clients.save(client);
+
+            for (int t = 0; t < tripsPerClient; t++) {
+                Itinerary itinerary = randomItinerary(net, routes, rnd);
+                Trip.FareClass fare = rnd.nextBoolean() ? Trip.FareClass.FIRST : Trip.FareClass.SECOND;
+                int pax = 1 + rnd.nextInt(maxPassengers);
+                Trip trip = new Trip(client.getClientId(), itinerary, bookingDate.plusDays(1 + rnd.nextInt(90)), fare, pax);
+                trips.save(trip);
+
+                for (int p = 0; p < pax; p++) {
+                    reservations.save(new Reservation(
+                            trip.getTripId(),
+                            client.getClientId(),
+                            "Passenger " + c + "-" + t + "-" + p,
+                            1 + rnd.nextInt(90),
+                            "ID" + c + "T" + t + "P" + p,
+                            fare));
+                    written++;
+                }
+            }
+        }
+        return written;
+    }
+
+    // a random route, followed by a connecting route from its arrival city when there is one
+    private static Itinerary randomItinerary(TrainNetwork net, List<Route> routes, Random rnd) {
+        Route first = routes.get(rnd.nextInt(routes.size()));
+        Itinerary it = new Itinerary();
+        it.addLeg(new Leg(first, 0, first.getDurationMinutes()));
+
+        List<Route> onward = net.getRoutesFrom(first.getArrivalCity());
+        if (!onward.isEmpty() && rnd.nextBoolean()) {
+            Route second = onward.get(rnd.nextInt(onward.size()));
+            int gap = TimeUtil.diff(first.getArrivalMinuteOfDay(), second.getDepartureMinuteOfDay());
+            it.addLeg(new Leg(second, gap, second.getDurationMinutes()));
+        }
+        it.recomputeTotals();
+        return it;
+    }
+}
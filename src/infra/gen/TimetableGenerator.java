@@ -0,0 +1,198 @@
+package infra.gen;
+
+import domain.TrainType;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Deterministic generator for large synthetic timetables.
+ * Writes CSV files in the same format as resources/eu_rail_network.csv, so they load
+ * through CsvLoader / TrainNetwork unchanged. The same seed and settings always give
+ * the same file.
+ *
+ * Cities are split into hubs and spokes: hubs get many departures, spokes few, and
+ * spokes mostly connect to hubs. A share of connections are night trains that
+ * arrive the next day ("07:15 (+1d)").
+ */
+public final class TimetableGenerator {
+
+    public static final String HEADER = "Route ID,Departure City,Arrival City,Departure Time,Arrival Time,"
+            + "Train Type,Days of Operation,First Class ticket rate (in euro),Second Class ticket rate (in euro)";
+
+    // day patterns used by the real timetable
+    private static final String[] DAY_PATTERNS = {"Daily", "Mon-Fri", "Sat-Sun", "Fri-Sun", "Mon,Wed,Fri", "Tue,Thu"};
+
+    private final long seed;
+    private int cityCount = 250;
+    private double hubShare = 0.05;        // fraction of cities that are hubs
+    private int hubDegree = 40;            // departures per hub
+    private int spokeDegree = 4;           // departures per spoke
+    private double spokeToHubShare = 0.7;  // spoke departures that go to a hub
+    private double overnightShare = 0.05;  // night trains arriving the next day
+    private final Map<TrainType, Integer> trainTypeWeights = new EnumMap<>(TrainType.class);
+
+    public TimetableGenerator(long seed) {
+        this.seed = seed;
+        for (TrainType t : TrainType.values()) {
+            if (t != TrainType.UNKNOWN) trainTypeWeights.put(t, 1);
+        }
+    }
+
+    // ---- settings ----
+    public TimetableGenerator setCityCount(int cityCount) {
+        require(cityCount >= 2, "cityCount must be >= 2");
+        this.cityCount = cityCount;
+        return this;
+    }
+
+    public TimetableGenerator setHubShare(double hubShare) {
+        require(hubShare > 0 && hubShare <= 1, "hubShare must be in (0, 1]");
+        this.hubShare = hubShare;
+        return this;
+    }
+
+    public TimetableGenerator setHubDegree(int hubDegree) {
+        require(hubDegree >= 1, "hubDegree must be >= 1");
+        this.hubDegree = hubDegree;
+        return this;
+    }
+
+    public TimetableGenerator setSpokeDegree(int spokeDegree) {
+        require(spokeDegree >= 1, "spokeDegree must be >= 1");
+        this.spokeDegree = spokeDegree;
+        return this;
+    }
+
+    public TimetableGenerator setSpokeToHubShare(double share) {
+        require(share >= 0 && share <= 1, "spokeToHubShare must be in [0, 1]");
+        this.spokeToHubShare = share;
+        return this;
+    }
+
+    public TimetableGenerator setOvernightShare(double share) {
+        require(share >= 0 && share <= 1, "overnightShare must be in [0, 1]");
+        this.overnightShare = share;
+        return this;
+    }
+
+    // relative weight of a train type, 0 removes it from the mix
+    public TimetableGenerator setTrainTypeWeight(TrainType type, int weight) {
+        require(type != null && type != TrainType.UNKNOWN, "train type is required");
+        require(weight >= 0, "weight must be >= 0");
+        trainTypeWeights.put(type, weight);
+        return this;
+    }
+
+    public int hubCount() {
+        return Math.max(1, (int) Math.round(cityCount * hubShare));
+    }
+
+    // number of rows generate() writes
+    public long connectionCount() {
+        int hubs = hubCount();
+        return (long) hubs * hubDegree + (long) (cityCount - hubs) * spokeDegree;
+    }
+
+    /**
+     * Writes the timetable to the given path and returns the number of connections written.
+     */
+    public long writeCsv(Path out) throws IOException {
+        int typeTotal = trainTypeWeights.values().stream().mapToInt(Integer::intValue).sum();
+        require(typeTotal > 0, "at least one train type needs a weight > 0");
+
+        Random rnd = new Random(seed);
+        int hubs = hubCount();
+        String[] names = cityNames(hubs);
+        TrainType[] typeMix = typeMix(typeTotal);
+
+        if (out.getParent() != null) Files.createDirectories(out.getParent());
+        long written = 0;
+        try (BufferedWriter w = Files.newBufferedWriter(out, StandardCharsets.UTF_8)) {
+            w.write(HEADER);
+            w.newLine();
+            for (int from = 0; from < cityCount; from++) {
+                boolean isHub = from < hubs;
+                int degree = isHub ? hubDegree : spokeDegree;
+                for (int k = 0; k < degree; k++) {
+                    int to = pickDestination(rnd, from, isHub, hubs);
+                    w.write(row(rnd, ++written, names[from], names[to], typeMix));
+                    w.newLine();
+                }
+            }
+        }
+        return written;
+    }
+
+    // hubs talk to everybody, spokes mostly to hubs
+    private int pickDestination(Random rnd, int from, boolean isHub, int hubs) {
+        int to;
+        do {
+            boolean toHub = !isHub && rnd.nextDouble() < spokeToHubShare;
+            to = toHub ? rnd.nextInt(hubs) : rnd.nextInt(cityCount);
+        } while (to == from);
+        return to;
+    }
+
+    private String row(Random rnd, long id, String from, String to, TrainType[] typeMix) {
+        boolean overnight = rnd.nextDouble() < overnightShare;
+        int dep;
+        int duration;
+        if (overnight) {
+            dep = 20 * 60 + 5 * rnd.nextInt(48);          // 20:00 - 23:55
+            duration = 6 * 60 + 5 * rnd.nextInt(60);      // 6h - 11h, past midnight
+        } else {
+            dep = 5 * 60 + 5 * rnd.nextInt(186);          // 05:00 - 20:25
+            duration = 30 + 5 * rnd.nextInt(60);          // 30min - 5h25
+        }
+        int arr = dep + duration;
+        String arrival = hhmm(arr % (24 * 60)) + (arr >= 24 * 60 ? " (+1d)" : "");
+
+        TrainType type = overnight && trainTypeWeights.getOrDefault(TrainType.NIGHTJET, 0) > 0
+                ? TrainType.NIGHTJET
+                : typeMix[rnd.nextInt(typeMix.length)];
+        String days = DAY_PATTERNS[rnd.nextInt(DAY_PATTERNS.length)];
+
+        // price grows with duration; first class is 30-60% more
+        int second = 10 + duration / 3 + rnd.nextInt(40);
+        int first = second + second * (30 + rnd.nextInt(31)) / 100;
+
+        return String.format("R%07d,%s,%s,%s,%s,%s,%s,%d,%d",
+                id, from, to, hhmm(dep), arrival, type, quote(days), first, second);
+    }
+
+    private String[] cityNames(int hubs) {
+        String[] names = new String[cityCount];
+        for (int i = 0; i < cityCount; i++) {
+            names[i] = i < hubs ? String.format("Hub %04d", i) : String.format("Town %06d", i);
+        }
+        return names;
+    }
+
+    // one entry per unit of weight, so a uniform pick follows the configured mix
+    private TrainType[] typeMix(int total) {
+        TrainType[] mix = new TrainType[total];
+        int i = 0;
+        for (Map.Entry<TrainType, Integer> e : trainTypeWeights.entrySet()) {
+            for (int k = 0; k < e.getValue(); k++) mix[i++] = e.getKey();
+        }
+        return mix;
+    }
+
+    private static String hhmm(int minutes) {
+        return String.format("%02d:%02d", minutes / 60, minutes % 60);
+    }
+
+    private static String quote(String cell) {
+        return cell.indexOf(',') >= 0 ? "\"" + cell + "\"" : cell;
+    }
+
+    private static void require(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalArgumentException(message);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package search;
+
+import domain.BookingPolicies;
+import domain.Itinerary;
+import domain.Leg;
+import domain.Route;
+import domain.TimeUtil;
+import infra.CityBounds;
+import infra.TrainNetwork;
+import infra.TransferGraph;
+import java.util.*;
+
+// Arrive-by search: the latest departures that still arrive by q's arrEnd.
+// Runs backwards from the destination over the network's arrival index. Last legs are the
+// arrivals into toCity inside the arrival window (arrStart, if set, to arrEnd); a path is
+// extended by a connection arriving where its earliest leg departs, allowed when the
+// network's TransferGraph has the change, as in forward searches. CityBounds.from(origin) prunes paths
+// that cannot get back to the origin, and its minutes give each path the latest departure any
+// itinerary through it can have; paths are expanded by that, latest first, so itineraries come
+// out in order of departure and the search stops after maxResults.
+//
+// Times count from 00:00 of the arrival day. The arrival window applies to the last leg; the
+// other filters apply to every leg, with maxTransfers, no city twice and the direct-route
+// policy as in the forward engines.
+public final class ArriveBySearchService {
+
+    private static final int DAY_MIN = 24 * 60;
+
+    private ArriveBySearchService() {
+    }
+
+    // latest departure first, ties shortest first
+    public static List<Itinerary> find(TrainNetwork net, SearchQuery q, int maxTransfers, int maxResults) {
+        return find(net, net.cityId(q.getFromCity()), net.cityId(q.getToCity()), q, maxTransfers, maxResults);
+    }
+
+    // city-id version; the cities in q are ignored, only its filters apply
+    public static List<Itinerary> find(TrainNetwork net, int start, int goal, SearchQuery q,
+            int maxTransfers, int maxResults) {
+        int deadline = q.getArrEndMinute();
+        if (deadline < 0) {
+            throw new IllegalArgumentException("Arrive-by search needs arrEnd");
+        }
+        if (start < 0 || goal < 0 || start == goal || maxResults <= 0
+                || !IndirectSearchService.canReach(net, start, goal, maxTransfers)) {
+            return List.of();
+        }
+        int earliest = Math.max(0, q.getArrStartMinute());
+        int maxTotal = BookingPolicies.maxTotalMinutes(IndirectSearchService.directDurationMinutes(net, start, goal));
+        int maxLayover = BookingPolicies.maxLayoverMinutes();
+        CityBounds.Goal fromStart = net.getCityBounds().from(start);
+        TransferGraph transfers = net.getTransferGraph();
+        CompiledQuery leg = CompiledQuery.forLegs(withoutArrivalWindow(q));
+
+        PriorityQueue<Node> open = new PriorityQueue<>();
+        long seq = 0;
+        for (int k = firstArrivalAtOrAfter(net, goal, earliest); k < net.arrivalsEnd(goal); k++) {
+            int id = net.arrivalEdge(k);
+            Route r = net.route(id);
+            if (r.getArrivalMinuteOfDay() > deadline) {
+                break;
+            }
+            int city = net.departureCityOf(id);
+            if (city == goal || !leg.matches(r)
+                    || !IndirectSearchService.withinBounds(fromStart, city, Math.max(0, maxTransfers), r.getDurationMinutes(), maxTotal)) {
+                continue;
+            }
+            open.add(new Node(id, city, null, r.getArrivalMinuteOfDay() - r.getDurationMinutes(),
+                    r.getDurationMinutes(), fromStart.minutes(city), seq++));
+        }
+
+        List<Itinerary> results = new ArrayList<>();
+        Set<String> seenKeys = new HashSet<>();
+        while (!open.isEmpty()) {
+            Node cur = open.poll();
+            if (cur.city == start) {
+                Itinerary it = cur.toItinerary(net);
+                if (cur.elapsed <= maxTotal && seenKeys.add(IndirectSearchService.itineraryKey(it))) {
+                    results.add(it);
+                    if (results.size() == maxResults) {
+                        break;
+                    }
+                }
+                continue; // the origin is never passed through
+            }
+            if (cur.legs > maxTransfers) {
+                continue;
+            }
+
+            // arrivals into cur.city at most maxLayover before it departs, maybe around midnight
+            Route later = net.route(cur.connection);
+            int dep = later.getDepartureMinuteOfDay();
+            int from = dep - maxLayover;
+            if (from < 0) {
+                seq = expand(net, transfers, cur, from + DAY_MIN, DAY_MIN - 1, later, leg, goal, fromStart,
+                        maxTransfers, maxTotal, open, seq);
+                from = 0;
+            }
+            seq = expand(net, transfers, cur, from, dep, later, leg, goal, fromStart, maxTransfers, maxTotal, open, seq);
+        }
+        return results;
+    }
+
+    // pushes the extensions of cur by connections arriving in cur.city between lo and hi
+    private static long expand(TrainNetwork net, TransferGraph transfers, Node cur, int lo, int hi, Route later, CompiledQuery leg,
+            int goal, CityBounds.Goal fromStart, int maxTransfers, int maxTotal, PriorityQueue<Node> open, long seq) {
+        int legsLeft = maxTransfers - cur.legs; // legs that may still come before the new one
+        for (int k = firstArrivalAtOrAfter(net, cur.city, lo); k < net.arrivalsEnd(cur.city); k++) {
+            int id = net.arrivalEdge(k);
+            Route r = net.route(id);
+            if (r.getArrivalMinuteOfDay() > hi) {
+                break;
+            }
+            if (!leg.matches(r) || !transfers.allows(id, cur.connection)) {
+                continue;
+            }
+            int city = net.departureCityOf(id);
+            if (city == goal || cur.visits(city)) {
+                continue;
+            }
+            int gap = TimeUtil.diff(r.getArrivalMinuteOfDay(), later.getDepartureMinuteOfDay());
+            int elapsed = cur.elapsed + gap + r.getDurationMinutes();
+            if (!IndirectSearchService.withinBounds(fromStart, city, legsLeft, elapsed, maxTotal)) {
+                continue;
+            }
+            open.add(new Node(id, city, cur, cur.depAbs - gap - r.getDurationMinutes(), elapsed,
+                    fromStart.minutes(city), seq++));
+        }
+        return seq;
+    }
+
+    // the query without its arrival window, which only the last leg has to meet
+    private static SearchQuery withoutArrivalWindow(SearchQuery q) {
+        SearchQuery c = new SearchQuery(null, null, q.getDepStart(), q.getDepEnd(), null, null,
+                q.getTrainType(), q.getDays(), q.getPriceClass(), q.getMaxPrice(), q.getSortBy(), q.getSortDir());
+        c.normalize();
+        return c;
+    }
+
+    // index of the first arrival into city at or after the given minute of day
+    private static int firstArrivalAtOrAfter(TrainNetwork net, int city, int minute) {
+        int lo = net.arrivalsStart(city), hi = net.arrivalsEnd(city);
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (net.route(net.arrivalEdge(mid)).getArrivalMinuteOfDay() < minute) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // a path into the destination, built backwards: its earliest leg and the rest after it
+    private static final class Node implements Comparable<Node> {
+        final int connection;
+        final int city;      // departure city of connection
+        final Node next;     // the legs after this one, null for the last leg
+        final int legs;
+        final int depAbs;    // departure of connection, minutes from 00:00 of the arrival day
+        final int elapsed;   // from that departure to the arrival at the destination
+        final int bound;     // latest an itinerary through this path can leave the origin
+        final long seq;
+
+        Node(int connection, int city, Node next, int depAbs, int elapsed, int minutesFromStart, long seq) {
+            this.connection = connection;
+            this.city = city;
+            this.next = next;
+            this.legs = next == null ? 1 : next.legs + 1;
+            this.depAbs = depAbs;
+            this.elapsed = elapsed;
+            this.bound = depAbs - minutesFromStart; // 0 minutes at the origin, where bound is depAbs
+            this.seq = seq;
+        }
+
+        // whether one of the legs departs from c
+        boolean visits(int c) {
+            for (Node n = this; n != null; n = n.next) {
+                if (n.city == c) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        Itinerary toItinerary(TrainNetwork net) {
+            Itinerary it = new Itinerary();
+            Route prev = null;
+            for (Node n = this; n != null; n = n.next) {
+                Route r = net.route(n.connection);
+                int gap = prev == null ? 0 : TimeUtil.diff(prev.getArrivalMinuteOfDay(), r.getDepartureMinuteOfDay());
+                it.addLeg(new Leg(r, gap, r.getDurationMinutes()));
+                prev = r;
+            }
+            it.recomputeTotals();
+            return it;
+        }
+
+        // latest bound first; on a tie paths still short of the origin go first, so the
+        // itineraries of one departure time all come out shortest first
+        @Override
+        public int compareTo(Node o) {
+            if (bound != o.bound) return Integer.compare(o.bound, bound);
+            boolean done = bound == depAbs, oDone = o.bound == o.depAbs; // only the origin is 0 minutes away
+            if (done != oDone) return done ? 1 : -1;
+            if (elapsed != o.elapsed) return Integer.compare(elapsed, o.elapsed);
+            return Long.compare(seq, o.seq);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package search;
+
+import domain.BookingPolicies;
+import domain.Itinerary;
+import domain.Route;
+import infra.CityBounds;
+import infra.TrainNetwork;
+import infra.TransferGraph;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+// Many origin/destination queries at once, e.g. pricing every city pair of a nightly job.
+// Queries are grouped by origin and leg filters (times, type, days, price), and each group
+// runs one breadth-first search from its origin that collects itineraries for all of the
+// group's destinations on the way. Paths are explored in the same order as
+// IndirectSearchService.findBreadthFirst, so every query gets exactly the list that method
+// would return for it. Groups can run in parallel on a ForkJoinPool.
+public final class BatchSearchService {
+
+    private BatchSearchService() {
+    }
+
+    // one result list per query, in the order of queries
+    public static List<List<Itinerary>> find(TrainNetwork net, List<SearchQuery> queries,
+            int maxTransfers, int maxResults) {
+        return find(net, queries, maxTransfers, maxResults, null);
+    }
+
+    // pool may be null to run every group on the calling thread
+    public static List<List<Itinerary>> find(TrainNetwork net, List<SearchQuery> queries,
+            int maxTransfers, int maxResults, ForkJoinPool pool) {
+        List<List<Itinerary>> out = new ArrayList<>(Collections.nCopies(queries.size(), List.<Itinerary>of()));
+        Map<GroupKey, Group> groups = new LinkedHashMap<>();
+        boolean allPairs = net.getCityBounds().isAllPairs();
+        for (int i = 0; i < queries.size(); i++) {
+            SearchQuery q = queries.get(i);
+            int from = net.cityId(q.getFromCity());
+            int to = net.cityId(q.getToCity());
+            if (from < 0 || to < 0 || maxResults <= 0) {
+                continue; // stays empty, as in findBreadthFirst
+            }
+            if (allPairs && !IndirectSearchService.canReach(net, from, to, maxTransfers)) {
+                continue; // on larger networks a bounds row per destination costs more than it saves
+            }
+            if (from == to) {
+                out.set(i, IndirectSearchService.findBreadthFirst(net, from, to, q, maxTransfers, maxResults));
+                continue; // a round trip may revisit its origin, which the shared search never does
+            }
+            groups.computeIfAbsent(new GroupKey(from, legQuery(q)), k -> new Group(k.from, q))
+                    .add(to, i);
+        }
+
+        if (pool == null) {
+            for (Group g : groups.values()) {
+                g.run(net, maxTransfers, maxResults, out);
+            }
+        } else {
+            List<Callable<Void>> tasks = new ArrayList<>(groups.size());
+            for (Group g : groups.values()) {
+                tasks.add(() -> {
+                    g.run(net, maxTransfers, maxResults, out); // each group writes its own indexes
+                    return null;
+                });
+            }
+            for (var f : pool.invokeAll(tasks)) {
+                try {
+                    f.get();
+                } catch (Exception e) {
+                    throw new IllegalStateException("batch search failed", e.getCause() != null ? e.getCause() : e);
+                }
+            }
+        }
+        return out;
+    }
+
+    // the query without cities or sort order: the part that decides which legs can be used
+    private static SearchQuery legQuery(SearchQuery q) {
+        SearchQuery c = q.canonical();
+        return new SearchQuery(null, null, c.getDepStart(), c.getDepEnd(), c.getArrStart(), c.getArrEnd(),
+                c.getTrainType(), c.getDays(), c.getPriceClass(), c.getMaxPrice(), "DURATION", "ASC");
+    }
+
+    private record GroupKey(int from, SearchQuery legs) {
+    }
+
+    // queries sharing an origin and leg filters; per destination the indexes of its queries
+    private static final class Group {
+        final int from;
+        final SearchQuery filters;
+        final Map<Integer, List<Integer>> queriesByDestination = new LinkedHashMap<>();
+
+        Group(int from, SearchQuery filters) {
+            this.from = from;
+            this.filters = filters;
+        }
+
+        void add(int to, int queryIndex) {
+            queriesByDestination.computeIfAbsent(to, k -> new ArrayList<>()).add(queryIndex);
+        }
+
+        void run(TrainNetwork net, int maxTransfers, int maxResults, List<List<Itinerary>> out) {
+            int n = queriesByDestination.size();
+            int[] goals = new int[n];
+            int g = 0;
+            for (int to : queriesByDestination.keySet()) goals[g++] = to;
+
+            List<List<Itinerary>> found = new OneToMany(net, from, goals, filters, maxTransfers, maxResults).run();
+            for (int i = 0; i < n; i++) {
+                List<Itinerary> results = List.copyOf(found.get(i)); // shared by equal queries
+                for (int queryIndex : queriesByDestination.get(goals[i])) {
+                    out.set(queryIndex, results);
+                }
+            }
+        }
+    }
+
+    // One breadth-first search from an origin to several goals. A path that reaches a goal is
+    // recorded for it and, unlike single-goal BFS, keeps going towards the others. Pruning keeps
+    // a path while some goal is still possible, using two multi-goal CityBounds rows: one for the
+    // goals with a direct route, where reaching goal d counts as (budget - maxTotal of d)
+    // minutes, so budget - minutes(c) is the most a path at c may have used; and one for the
+    // goals without, whose total time is not limited.
+    private static final class OneToMany {
+        private final TrainNetwork net;
+        private final int start;
+        private final int[] goals;
+        private final int maxTransfers;
+        private final int maxResults;
+        private final CompiledQuery leg;
+
+        private final int[] goalIndex;     // city -> index in goals, -1 for other cities
+        private final Integer[] directDurationMinutes;
+        private final int budget;
+        private final CityBounds.Goal limited;   // null when every goal is unlimited
+        private final CityBounds.Goal unlimited; // null when every goal has a direct route
+
+        OneToMany(TrainNetwork net, int start, int[] goals, SearchQuery q, int maxTransfers, int maxResults) {
+            this.net = net;
+            this.start = start;
+            this.goals = goals;
+            this.maxTransfers = maxTransfers;
+            this.maxResults = maxResults;
+            this.leg = IndirectSearchService.legFilter(q);
+
+            goalIndex = new int[net.getCityCount()];
+            Arrays.fill(goalIndex, -1);
+            directDurationMinutes = new Integer[goals.length];
+            int[] maxTotal = new int[goals.length];
+            int limitedCount = 0;
+            int most = 0;
+            for (int i = 0; i < goals.length; i++) {
+                goalIndex[goals[i]] = i;
+                directDurationMinutes[i] = IndirectSearchService.directDurationMinutes(net, start, goals[i]);
+                maxTotal[i] = BookingPolicies.maxTotalMinutes(directDurationMinutes[i]);
+                if (maxTotal[i] != Integer.MAX_VALUE) {
+                    limitedCount++;
+                    most = Math.max(most, maxTotal[i]);
+                }
+            }
+            budget = most;
+
+            int[] limitedGoals = new int[limitedCount];
+            int[] head = new int[limitedCount];
+            int[] unlimitedGoals = new int[goals.length - limitedCount];
+            int l = 0, u = 0;
+            for (int i = 0; i < goals.length; i++) {
+                if (maxTotal[i] != Integer.MAX_VALUE) {
+                    limitedGoals[l] = goals[i];
+                    head[l++] = budget - maxTotal[i];
+                } else {
+                    unlimitedGoals[u++] = goals[i];
+                }
+            }
+            CityBounds bounds = net.getCityBounds();
+            limited = l == 0 ? null : bounds.towardAny(limitedGoals, head);
+            unlimited = u == 0 ? null : bounds.towardAny(unlimitedGoals, new int[u]);
+        }
+
+        // the multi-goal version of IndirectSearchService.withinBounds
+        private boolean withinBounds(int city, int legsLeft, int elapsed) {
+            if (unlimited != null && unlimited.legs(city) <= legsLeft) {
+                return true;
+            }
+            return limited != null && limited.legs(city) <= legsLeft
+                    && (long) elapsed + limited.minutes(city) <= budget;
+        }
+
+        List<List<Itinerary>> run() {
+            List<List<Itinerary>> results = new ArrayList<>(goals.length);
+            List<Set<String>> seenKeys = new ArrayList<>(goals.length);
+            for (int i = 0; i < goals.length; i++) {
+                results.add(new ArrayList<>());
+                seenKeys.add(new HashSet<>());
+            }
+            int open = goals.length; // goals still short of maxResults
+            TransferGraph transfers = net.getTransferGraph();
+
+            Deque<PartialPath> queue = new ArrayDeque<>();
+            for (int k = net.departuresStart(start); k < net.departuresEnd(start); k++) {
+                int id = net.departureEdgeInCsvOrder(k);
+                Route r = net.route(id);
+                if (leg.matches(r) && withinBounds(net.arrivalCityOf(id), Math.max(0, maxTransfers), r.getDurationMinutes())) {
+                    queue.addLast(new PartialPath(id, net.arrivalCityOf(id), r));
+                }
+            }
+
+            while (!queue.isEmpty() && open > 0) {
+                PartialPath cur = queue.removeFirst();
+                int atCity = cur.city;
+
+                int g = goalIndex[atCity];
+                if (g >= 0 && results.get(g).size() < maxResults) {
+                    Itinerary it = cur.toItinerary(net);
+                    if (BookingPolicies.isOkComparedToDirect(it, directDurationMinutes[g])
+                            && seenKeys.get(g).add(IndirectSearchService.itineraryKey(it))) {
+                        results.get(g).add(it);
+                        if (results.get(g).size() == maxResults) open--;
+                    }
+                }
+
+                int transfersUsed = cur.legs - 1;
+                if (transfersUsed >= maxTransfers) {
+                    continue;
+                }
+
+                for (int k = transfers.start(cur.connection); k < transfers.end(cur.connection); k++) {
+                    int e = transfers.inCsvOrder(k);
+                    int id = transfers.edge(e);
+                    Route nxt = net.route(id);
+                    if (!leg.matches(nxt)) {
+                        continue;
+                    }
+                    int nextCity = net.arrivalCityOf(id);
+                    if (nextCity == start || cur.visits(nextCity)) {
+                        continue; // a path through a goal never comes back to it
+                    }
+                    int elapsed = cur.elapsed + transfers.gap(e) + nxt.getDurationMinutes();
+                    if (!withinBounds(nextCity, maxTransfers - transfersUsed - 1, elapsed)) {
+                        continue;
+                    }
+                    queue.addLast(new PartialPath(id, nextCity, cur, nxt, elapsed));
+                }
+            }
+            return results;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package search;
+
+import domain.Route;
+import domain.TrainType;
+
+// A SearchQuery turned into a route predicate once per search.
+// Times are minutes of day, the train type is an enum, days are a mask and the price class
+// is resolved up front; clauses the query leaves open are dropped, so matches() only
+// compares ints and references for the constrained ones. Same answers as RouteFilters.matches.
+public final class CompiledQuery {
+
+    private static final int PRICE_ANY = 0;
+    private static final int PRICE_FIRST = 1;
+    private static final int PRICE_SECOND = 2;
+
+    private final String fromCity;     // null = any
+    private final String toCity;       // null = any
+    private final int depStart;        // -1 = open
+    private final int depEnd;
+    private final int arrStart;
+    private final int arrEnd;
+    private final boolean anyType;
+    private final TrainType type;
+    private final String unknownType;  // compared as text when the query type is not a known enum
+    private final int daysMask;        // -1 = any day
+    private final int maxPrice;        // -1 = no limit
+    private final int priceClass;
+
+    private CompiledQuery(SearchQuery q, boolean keepCities) {
+        this.fromCity = keepCities ? q.getFromCity() : null;
+        this.toCity = keepCities ? q.getToCity() : null;
+        this.depStart = q.getDepStartMinute();
+        this.depEnd = q.getDepEndMinute();
+        this.arrStart = q.getArrStartMinute();
+        this.arrEnd = q.getArrEndMinute();
+
+        String t = q.getTrainType();
+        this.anyType = t == null || t.isBlank();
+        this.type = anyType ? null : TrainType.fromString(t);
+        this.unknownType = type == TrainType.UNKNOWN ? t : null;
+
+        this.daysMask = q.getDays() == null || q.getDays().isEmpty() ? -1 : q.getDaysMask();
+
+        this.maxPrice = q.getMaxPrice() == null ? -1 : q.getMaxPrice();
+        String cls = q.getPriceClass() == null ? "ANY" : q.getPriceClass().toUpperCase();
+        this.priceClass = "FIRST".equals(cls) ? PRICE_FIRST : "SECOND".equals(cls) ? PRICE_SECOND : PRICE_ANY;
+    }
+
+    // every clause of q
+    public static CompiledQuery of(SearchQuery q) {
+        return new CompiledQuery(q, true);
+    }
+
+    // without the city clauses, for legs anywhere in an itinerary or for candidates
+    // that already come from a city index
+    public static CompiledQuery forLegs(SearchQuery q) {
+        return new CompiledQuery(q, false);
+    }
+
+    public boolean matches(Route r) {
+        if (fromCity != null && !r.getDepartureCity().equalsIgnoreCase(fromCity)) return false;
+        if (toCity != null && !r.getArrivalCity().equalsIgnoreCase(toCity)) return false;
+
+        int dep = r.getDepartureMinuteOfDay();
+        if (depStart >= 0 && dep < depStart) return false;
+        if (depEnd >= 0 && dep > depEnd) return false;
+        int arr = r.getArrivalMinuteOfDay();
+        if (arrStart >= 0 && arr < arrStart) return false;
+        if (arrEnd >= 0 && arr > arrEnd) return false;
+
+        if (!anyType && !matchesType(r)) return false;
+        if (daysMask >= 0 && (daysMask & r.getDaysMask()) == 0) return false;
+
+        if (maxPrice >= 0) {
+            return switch (priceClass) {
+                case PRICE_FIRST -> r.getFirstClassPrice() <= maxPrice;
+                case PRICE_SECOND -> r.getSecondClassPrice() <= maxPrice;
+                default -> r.getFirstClassPrice() <= maxPrice || r.getSecondClassPrice() <= maxPrice;
+            };
+        }
+        return true;
+    }
+
+    private boolean matchesType(Route r) {
+        if (r.getTrainTypeKind() != type) return false;
+        // two unrecognized types are only equal when their text is
+        return unknownType == null || (r.getTrainType() != null && r.getTrainType().equalsIgnoreCase(unknownType));
+    }
+}
@@ -0,0 +1,288 @@
+package search;
+
+import domain.BookingPolicies;
+import domain.Itinerary;
+import domain.ItineraryComparators;
+import domain.Leg;
+import domain.Route;
+import infra.CityBounds;
+import infra.TrainNetwork;
+import infra.TransferGraph;
+import java.util.*;
+
+// Connection Scan (CSA) engine for indirect itineraries.
+// Walks the departure-time-sorted timetable of the network once per service day
+// and keeps, for every connection that can be boarded, the best way of reaching it.
+// The timetable repeats daily, so time is counted in minutes from 00:00 of the search day.
+public final class ConnectionScanSearchService {
+
+    private static final int DAY_MIN = 24 * 60;
+
+    private ConnectionScanSearchService() {
+    }
+
+    public static List<Itinerary> find(TrainNetwork net,
+            SearchQuery q,
+            int maxTransfers,
+            int maxResults) {
+        return find(net, net.cityId(q.getFromCity()), net.cityId(q.getToCity()), q, maxTransfers, maxResults);
+    }
+
+    // city-id version; the cities in q are ignored, only its filters apply
+    public static List<Itinerary> find(TrainNetwork net,
+            int start,
+            int goal,
+            SearchQuery q,
+            int maxTransfers,
+            int maxResults) {
+        return find(net, start, goal, q, maxTransfers, maxResults, null);
+    }
+
+    // dated version: day 0 of the scan is the calendar's travel date and a connection is only
+    // scanned on the days it runs; null scans every connection on every day
+    static List<Itinerary> find(TrainNetwork net,
+            int start,
+            int goal,
+            SearchQuery q,
+            int maxTransfers,
+            int maxResults,
+            ServiceCalendar calendar) {
+        if (start < 0 || goal < 0 || maxResults <= 0) {
+            return List.of();
+        }
+
+        if (!IndirectSearchService.canReach(net, start, goal, maxTransfers)) {
+            return List.of();
+        }
+
+        Integer directDurationMinutes = IndirectSearchService.directDurationMinutes(net, start, goal);
+        int maxTotal = BookingPolicies.maxTotalMinutes(directDurationMinutes);
+        CityBounds.Goal toGoal = net.getCityBounds().toward(goal);
+        CompiledQuery leg = IndirectSearchService.legFilter(q);
+
+        int n = net.getConnectionCount();
+
+        // filters do not depend on the day, evaluate them once per connection
+        boolean[] legOk = new boolean[n];
+        int[] depMin = new int[n];
+        boolean anySeed = false;
+        for (int i = 0; i < n; i++) {
+            legOk[i] = leg.matches(net.route(i));
+            depMin[i] = net.connection(i).getDepartureMinuteOfDay();
+            anySeed |= legOk[i] && net.departureCityOf(i) == start;
+        }
+        if (!anySeed) {
+            return List.of();
+        }
+
+        int maxLayover = BookingPolicies.maxLayoverMinutes();
+        TransferGraph changes = net.getTransferGraph();
+        // every leg plus its layover fits in a day, one extra day for overnight arrivals
+        int horizonDays = Math.max(0, maxTransfers) + 2;
+        if (calendar != null) {
+            horizonDays = Math.min(horizonDays, calendar.horizonDays());
+        }
+
+        Labels labels = new Labels();
+        Waiting waiting = new Waiting(net.getCityCount()); // city -> labels arrived there
+        List<Integer> atGoal = new ArrayList<>();
+
+        for (int day = 0; day < horizonDays; day++) {
+            if (day > 0 && waiting.isEmpty()) {
+                break; // nothing left that can be continued
+            }
+            for (int i = 0; i < n; i++) {
+                if (!legOk[i] || (calendar != null && !calendar.runsOnDay(i, day))) {
+                    continue;
+                }
+                int depCity = net.departureCityOf(i);
+                int arrCity = net.arrivalCityOf(i);
+                int depAbs = day * DAY_MIN + depMin[i];
+                int parent = -1;
+                int transfers = 0;
+
+                if (day == 0 && depCity == start) {
+                    // boarding at the origin
+                } else {
+                    if (waiting.size(depCity) == 0) {
+                        continue;
+                    }
+                    parent = bestParent(net, changes, labels, waiting, i, depCity, depAbs, maxLayover, maxTransfers,
+                            start, arrCity, goal);
+                    if (parent < 0) {
+                        continue;
+                    }
+                    transfers = labels.transfers[parent] + 1;
+                }
+
+                int arrAbs = depAbs + net.connection(i).getTripMinutes();
+                int startAbs = parent < 0 ? depAbs : labels.startAbs[parent];
+                // total as the itinerary will report it (legs use Route durations)
+                int legMin = net.route(i).getDurationMinutes();
+                int total = parent < 0 ? legMin : labels.total[parent] + (depAbs - labels.arrAbs[parent]) + legMin;
+                if (!IndirectSearchService.withinBounds(toGoal, arrCity, Math.max(0, maxTransfers) - transfers, total, maxTotal)) {
+                    continue; // this label can never become an acceptable itinerary
+                }
+                int label = labels.add(i, depAbs, arrAbs, parent, transfers, startAbs, total);
+
+                if (arrCity == goal) {
+                    atGoal.add(label); // reached destination, never continued from here
+                } else if (transfers < maxTransfers) {
+                    waiting.add(arrCity, label);
+                }
+            }
+        }
+
+        List<Itinerary> results = new ArrayList<>();
+        Set<String> seenKeys = new HashSet<>();
+        for (int label : atGoal) {
+            Itinerary it = materialize(net, labels, label);
+            if (!BookingPolicies.isOkComparedToDirect(it, directDurationMinutes)) {
+                continue;
+            }
+            if (seenKeys.add(IndirectSearchService.itineraryKey(it))) {
+                results.add(it);
+            }
+        }
+
+        // best first, so truncating keeps the best ones
+        results.sort(ItineraryComparators.BY_TOTAL_DURATION.thenComparing(ItineraryComparators.BY_TRANSFERS));
+        return results.size() > maxResults ? new ArrayList<>(results.subList(0, maxResults)) : results;
+    }
+
+    // picks the waiting label with fewest transfers (then latest start) that may board connection i;
+    // labels whose layover window has passed are dropped from the city on the way
+    private static int bestParent(TrainNetwork net, TransferGraph changes, Labels labels, Waiting waiting, int i, int city, int depAbs,
+            int maxLayover, int maxTransfers, int start, int nextCity, int goal) {
+        int[] list = waiting.labels[city];
+        int best = -1;
+
+        int keep = 0;
+        for (int w = 0; w < waiting.size(city); w++) {
+            int p = list[w];
+            int arrAbs = labels.arrAbs[p];
+            if (depAbs - arrAbs > maxLayover) {
+                continue; // too old for this and every later departure
+            }
+            list[keep++] = p;
+
+            if (arrAbs > depAbs || labels.transfers[p] >= maxTransfers) {
+                continue;
+            }
+            if (!changes.allows(labels.conn[p], i)) {
+                continue;
+            }
+            // no cycles: the next city must not already be on the path (the goal is never on it)
+            if (nextCity != goal && visits(net, labels, p, nextCity, start)) {
+                continue;
+            }
+            if (best < 0
+                    || labels.transfers[p] < labels.transfers[best]
+                    || (labels.transfers[p] == labels.transfers[best] && labels.startAbs[p] > labels.startAbs[best])) {
+                best = p;
+            }
+        }
+        waiting.truncate(city, keep);
+        return best;
+    }
+
+    private static boolean visits(TrainNetwork net, Labels labels, int label, int city, int start) {
+        if (city == start) {
+            return true;
+        }
+        for (int l = label; l >= 0; l = labels.parent[l]) {
+            if (net.arrivalCityOf(labels.conn[l]) == city) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Itinerary materialize(TrainNetwork net, Labels labels, int label) {
+        Deque<Integer> chain = new ArrayDeque<>();
+        for (int l = label; l >= 0; l = labels.parent[l]) {
+            chain.addFirst(l);
+        }
+        Itinerary it = new Itinerary();
+        int prevArr = -1;
+        for (int l : chain) {
+            Route r = net.route(labels.conn[l]);
+            int gap = prevArr < 0 ? 0 : labels.depAbs[l] - prevArr;
+            it.addLeg(new Leg(r, gap, r.getDurationMinutes()));
+            prevArr = labels.arrAbs[l];
+        }
+        it.recomputeTotals();
+        return it;
+    }
+
+    // labels waiting for a connection, one growable int list per city id
+    private static final class Waiting {
+
+        final int[][] labels;
+        final int[] sizes;
+        int total;
+
+        Waiting(int cityCount) {
+            labels = new int[cityCount][];
+            sizes = new int[cityCount];
+        }
+
+        int size(int city) {
+            return sizes[city];
+        }
+
+        boolean isEmpty() {
+            return total == 0;
+        }
+
+        void add(int city, int label) {
+            int[] list = labels[city];
+            if (list == null) {
+                list = labels[city] = new int[8];
+            } else if (sizes[city] == list.length) {
+                list = labels[city] = Arrays.copyOf(list, list.length * 2);
+            }
+            list[sizes[city]++] = label;
+            total++;
+        }
+
+        void truncate(int city, int size) {
+            total -= sizes[city] - size;
+            sizes[city] = size;
+        }
+    }
+
+    // one entry per boarded connection occurrence, stored column-wise
+    private static final class Labels {
+
+        int size;
+        int[] conn = new int[64];
+        int[] depAbs = new int[64];
+        int[] arrAbs = new int[64];
+        int[] parent = new int[64];
+        int[] transfers = new int[64];
+        int[] startAbs = new int[64];
+        int[] total = new int[64];
+
+        int add(int c, int dep, int arr, int par, int xfers, int start, int tot) {
+            if (size == conn.length) {
+                int cap = size * 2;
+                conn = Arrays.copyOf(conn, cap);
+                depAbs = Arrays.copyOf(depAbs, cap);
+                arrAbs = Arrays.copyOf(arrAbs, cap);
+                parent = Arrays.copyOf(parent, cap);
+                transfers = Arrays.copyOf(transfers, cap);
+                startAbs = Arrays.copyOf(startAbs, cap);
+                total = Arrays.copyOf(total, cap);
+            }
+            conn[size] = c;
+            depAbs[size] = dep;
+            arrAbs[size] = arr;
+            parent[size] = par;
+            transfers[size] = xfers;
+            startAbs[size] = start;
+            total[size] = tot;
+            return size++;
+        }
+    }
+}
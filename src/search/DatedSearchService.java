@@ -0,0 +1,53 @@
+package search;
+
+import domain.Itinerary;
+import infra.TrainNetwork;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Searches for a concrete travel date. The timetable is laid out over a horizon of days from
+// the travel date (arrivalDayOffset and overnight layovers carry an itinerary into the next
+// days); a connection is only used on a day its daysOfOperation include, answered from the
+// network's per-weekday service bitsets. The first leg departs on the travel date.
+// Otherwise the same rules and results as the undated engines.
+public final class DatedSearchService {
+
+    private DatedSearchService() {
+    }
+
+    // horizon that never cuts an itinerary short: each leg plus its layover fits in a day,
+    // plus one day for overnight arrivals (the undated scan uses the same)
+    public static int defaultHorizonDays(int maxTransfers) {
+        return Math.max(0, maxTransfers) + 2;
+    }
+
+    // connection scan over the dated timeline, fastest first
+    public static List<Itinerary> find(TrainNetwork net, SearchQuery q, LocalDate date,
+            int maxTransfers, int maxResults) {
+        return find(net, q, date, maxTransfers, maxResults, defaultHorizonDays(maxTransfers));
+    }
+
+    // itineraries must end within horizonDays days counting the travel date
+    public static List<Itinerary> find(TrainNetwork net, SearchQuery q, LocalDate date,
+            int maxTransfers, int maxResults, int horizonDays) {
+        ServiceCalendar calendar = new ServiceCalendar(net, date, horizonDays);
+        return ConnectionScanSearchService.find(net, net.cityId(q.getFromCity()), net.cityId(q.getToCity()),
+                q, maxTransfers, maxResults, calendar);
+    }
+
+    // TopKSearchService for the travel date: best k by q.getSortBy() and q.getSortDir(), produced
+    // lazily when ascending (DESC enumerates every itinerary, as undated)
+    public static Stream<Itinerary> stream(TrainNetwork net, SearchQuery q, LocalDate date,
+            int maxTransfers, int k) {
+        ServiceCalendar calendar = new ServiceCalendar(net, date, defaultHorizonDays(maxTransfers));
+        Iterator<Itinerary> it = TopKSearchService.iterator(net, net.cityId(q.getFromCity()),
+                net.cityId(q.getToCity()), q, maxTransfers, k, calendar);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+}
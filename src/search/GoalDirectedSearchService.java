@@ -0,0 +1,34 @@
+package search;
+
+import domain.Itinerary;
+import infra.TrainNetwork;
+import java.util.*;
+
+// Goal-directed (A*) search for the fastest itineraries.
+// Partial paths wait in a priority queue ordered by elapsed time plus the CityBounds
+// lower bound from their city to the goal. The bound never overestimates, so paths reach
+// the goal in order of total duration and the search stops as soon as the k-th fastest is
+// known. Same itinerary rules as the BFS engine (leg filters, layovers, no revisits, the
+// direct-route policy), and the same top k as sorting that engine's full output with ORDER.
+// The search itself is TopKSearchService's best-first one with the DURATION key.
+public final class GoalDirectedSearchService {
+
+    // fastest first; ties by fewer transfers, then by the legs' route ids so the order is stable
+    public static final Comparator<Itinerary> ORDER = TopKSearchService.SortKey.DURATION.order;
+
+    private GoalDirectedSearchService() {
+    }
+
+    public static List<Itinerary> find(TrainNetwork net, SearchQuery q, int maxTransfers, int k) {
+        return find(net, net.cityId(q.getFromCity()), net.cityId(q.getToCity()), q, maxTransfers, k);
+    }
+
+    // city-id version; the cities in q are ignored, only its filters apply
+    public static List<Itinerary> find(TrainNetwork net, int start, int goal, SearchQuery q, int maxTransfers, int k) {
+        Iterator<Itinerary> it = TopKSearchService.iterator(net, start, goal, q, maxTransfers, k,
+                TopKSearchService.SortKey.DURATION);
+        List<Itinerary> found = new ArrayList<>();
+        it.forEachRemaining(found::add);
+        return found;
+    }
+}
@@ -2,10 +2,13 @@ package search;
 
 import domain.BookingPolicies;
 import domain.Itinerary;
-import domain.Leg;
 import domain.Route;
+import infra.CityBounds;
 import infra.TrainNetwork;
+import infra.TransferGraph;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
 
 // Builds indirect itineraries (0..N transfers) between two cities.
 public final class IndirectSearchService {
@@ -13,207 +16,235 @@ public final class IndirectSearchService {
     private IndirectSearchService() {
     }
 
+    // which algorithm find() runs; BFS enumerates every path, CSA scans the time-sorted timetable once,
+    // PARETO returns the non-dominated options (duration, price, transfers),
+    // ASTAR returns the fastest ones using a goal-directed search
+    public enum Engine { BFS, CSA, PARETO, ASTAR }
+
+    private static volatile Engine engine = Engine.CSA;
+
+    public static Engine getEngine() {
+        return engine;
+    }
+
+    public static void setEngine(Engine e) {
+        engine = Objects.requireNonNull(e, "engine");
+    }
+
+    // when set, the BFS engine searches the branch of each first leg as its own task on this
+    // pool (ParallelSearchService); null runs it on the calling thread
+    private static volatile ForkJoinPool pool;
+
+    public static ForkJoinPool getPool() {
+        return pool;
+    }
+
+    public static void setPool(ForkJoinPool p) {
+        pool = p;
+    }
+
     public static List<Itinerary> find(TrainNetwork net,
             SearchQuery q,
             int maxTransfers,
             int maxResults) {
-        String start = safeLower(q.getFromCity()); //normalize the city names to lower-case
-        String goal = safeLower(q.getToCity());
-        if (isBlank(start) || isBlank(goal)) {
-            return List.of();
-        }
+        return find(net, net.cityId(q.getFromCity()), net.cityId(q.getToCity()), q, maxTransfers, maxResults);
+    }
 
-        Integer directDurationMinutes = null;
-        try {
-            Route direct = net.getRoute(q.getFromCity(), q.getToCity());
-            if (direct != null) {
-                directDurationMinutes = direct.getDurationMinutes();
-            } else {
-                directDurationMinutes = Integer.MAX_VALUE; //no direct route
-            }
-        } catch (Exception e) {
-            directDurationMinutes = Integer.MAX_VALUE;
+    // city-id version; the cities in q are ignored, only its filters apply
+    public static List<Itinerary> find(TrainNetwork net,
+            int from,
+            int to,
+            SearchQuery q,
+            int maxTransfers,
+            int maxResults) {
+        if (from < 0 || to < 0 || !canReach(net, from, to, maxTransfers)) {
+            return List.of(); // answered from the bounds table, no search needed
         }
-
-        // qSeed: first leg must depart from q.fromCity, but can arrive anywhere
-        SearchQuery qSeed = new SearchQuery(
-                q.getFromCity(),
-                null, // drop toCity
-                q.getDepStart(), q.getDepEnd(),
-                q.getArrStart(), q.getArrEnd(),
-                q.getTrainType(),
-                q.getDays(),
-                q.getPriceClass(),
-                q.getMaxPrice(),
-                q.getSortBy(),
-                q.getSortDir()
-        );
-        qSeed.normalize();
-
-        // qLeg: subsequent legs can depart/arrive anywhere (no city constraints),
-        // but still obey time/type/price/day filters from q
-        SearchQuery qLeg = new SearchQuery(
-                null, // drop fromCity
-                null, // drop toCity
-                q.getDepStart(), q.getDepEnd(),
-                q.getArrStart(), q.getArrEnd(),
-                q.getTrainType(),
-                q.getDays(),
-                q.getPriceClass(),
-                q.getMaxPrice(),
-                q.getSortBy(),
-                q.getSortDir()
-        );
-        qLeg.normalize();
-
-        // queue with first legs from start city 
-        Deque<PathState> queue = new ArrayDeque<>();
-        for (Route r : net.getRoutesFrom(q.getFromCity())) {
-            if (!RouteFilters.matches(qSeed, r)) {
-                continue;
+        return switch (engine) {
+            case CSA -> ConnectionScanSearchService.find(net, from, to, q, maxTransfers, maxResults);
+            case BFS -> {
+                ForkJoinPool p = pool;
+                yield p == null
+                        ? findBreadthFirst(net, from, to, q, maxTransfers, maxResults)
+                        : ParallelSearchService.find(p, net, from, to, q, maxTransfers, maxResults);
             }
+            case ASTAR -> GoalDirectedSearchService.find(net, from, to, q, maxTransfers, maxResults);
+            case PARETO -> {
+                List<Itinerary> all = ParetoSearchService.find(net, from, to, q, maxTransfers);
+                yield all.size() > maxResults ? new ArrayList<>(all.subList(0, Math.max(0, maxResults))) : all;
+            }
+        };
+    }
 
-            Itinerary it = new Itinerary(); //for each acceptable 1st route we make in itinerary w/ 0 prev time
-            it.addLeg(new Leg(r, 0, r.getDurationMinutes()));
-            it.recomputeTotals(); //recompute totals for this leg of itinerary 
-
-            Set<String> visited = new HashSet<>(); //track visited cities
-            visited.add(start);
-            visited.add(safeLower(r.getArrivalCity()));
+    // exhaustive breadth-first enumeration of paths, results in discovery order
+    public static List<Itinerary> findBreadthFirst(TrainNetwork net,
+            SearchQuery q,
+            int maxTransfers,
+            int maxResults) {
+        return findBreadthFirst(net, net.cityId(q.getFromCity()), net.cityId(q.getToCity()), q, maxTransfers, maxResults);
+    }
 
-            queue.addLast(new PathState(it, visited));
+    public static List<Itinerary> findBreadthFirst(TrainNetwork net,
+            int start,
+            int goal,
+            SearchQuery q,
+            int maxTransfers,
+            int maxResults) {
+        if (start < 0 || goal < 0 || !canReach(net, start, goal, maxTransfers)) {
+            return List.of();
         }
 
         List<Itinerary> results = new ArrayList<>();
+        if (maxResults <= 0) {
+            return results;
+        }
         Set<String> seenKeys = new HashSet<>();
+        breadthFirst(net, start, goal, q, maxTransfers, new ArrayDeque<>(firstLegs(net, start, goal, q, maxTransfers)), it -> {
+            if (seenKeys.add(itineraryKey(it))) {
+                results.add(it);
+            }
+            return results.size() < maxResults;
+        });
+        return results;
+    }
+
+    // the first legs of the BFS engine: departures from start that pass the filters and bounds,
+    // in CSV order like every expansion, so results and their cut at maxResults follow the file
+    static List<PartialPath> firstLegs(TrainNetwork net, int start, int goal, SearchQuery q, int maxTransfers) {
+        int maxTotal = BookingPolicies.maxTotalMinutes(directDurationMinutes(net, start, goal));
+        CityBounds.Goal toGoal = net.getCityBounds().toward(goal);
+        // departures come out of the start city's slice, so one city-free filter covers every leg
+        CompiledQuery leg = legFilter(q);
+
+        List<PartialPath> out = new ArrayList<>();
+        for (int k = net.departuresStart(start); k < net.departuresEnd(start); k++) {
+            int id = net.departureEdgeInCsvOrder(k);
+            Route r = net.route(id);
+            if (!leg.matches(r)) {
+                continue;
+            }
+            if (!withinBounds(toGoal, net.arrivalCityOf(id), Math.max(0, maxTransfers), r.getDurationMinutes(), maxTotal)) {
+                continue; // cannot reach the goal in time or within the transfers left
+            }
+            out.add(new PartialPath(id, net.arrivalCityOf(id), r));
+        }
+        return out;
+    }
 
-        while (!queue.isEmpty() && results.size() < maxResults) {
-            PathState cur = queue.removeFirst();
-            Route last = lastRoute(cur.itinerary);
-            String atCity = safeLower(last.getArrivalCity());
+    // Breadth-first expansion of the paths in queue. Paths are parent-pointer nodes, an Itinerary
+    // is only built once a path reaches the goal and passes the direct-route policy; it then goes
+    // to found, which returns false to stop the search.
+    static void breadthFirst(TrainNetwork net, int start, int goal, SearchQuery q, int maxTransfers,
+            Deque<PartialPath> queue, Predicate<Itinerary> found) {
+        Integer directDurationMinutes = directDurationMinutes(net, start, goal);
+        int maxTotal = BookingPolicies.maxTotalMinutes(directDurationMinutes);
+        CityBounds.Goal toGoal = net.getCityBounds().toward(goal);
+        CompiledQuery leg = legFilter(q);
+        TransferGraph transfers = net.getTransferGraph();
+
+        while (!queue.isEmpty()) {
+            PartialPath cur = queue.removeFirst();
+            int atCity = cur.city;
 
-            // debug
-            // System.out.println("[DBG] Expanding from " + last.getArrivalCity() +
-            //         " — " + net.getRoutesFrom(last.getArrivalCity()).size() + " candidates; legs=" +
-            //         cur.itinerary.getLegs().size());
             // reached destination
-            if (goal.equals(atCity)) {
-                cur.itinerary.recomputeTotals();
+            if (atCity == goal) {
+                Itinerary it = cur.toItinerary(net);
 
                 //too much slower than a direct route
-                if (!BookingPolicies.isOkComparedToDirect(cur.itinerary, directDurationMinutes)) {
+                if (!BookingPolicies.isOkComparedToDirect(it, directDurationMinutes)) {
                     //it gets skipped
                     continue;
                 }
-                String key = itineraryKey(cur.itinerary);
-                if (seenKeys.add(key)) {
-                    results.add(cur.itinerary);
+                if (!found.test(it)) {
+                    return;
                 }
                 continue;
             }
 
-            int transfersUsed = cur.itinerary.getLegs().size() - 1;
+            int transfersUsed = cur.legs - 1;
             if (transfersUsed >= maxTransfers) {
                 continue;
             }
 
-            // expand with subsequent legs 
-            for (Route nxt : net.getRoutesFrom(last.getArrivalCity())) {
-                if (!RouteFilters.matches(qLeg, nxt)) {
+            // expand with subsequent legs: the departures the layover rules allow after this arrival,
+            // in CSV order
+            for (int k = transfers.start(cur.connection); k < transfers.end(cur.connection); k++) {
+                int e = transfers.inCsvOrder(k);
+                int id = transfers.edge(e);
+                Route nxt = net.route(id);
+                if (!leg.matches(nxt)) {
                     continue;
                 }
-
-                if (!BookingPolicies.isLayoverAllowed(last, nxt)) {
-                    continue; //if not allowed then this Route will be skipped since it has a layover time that is way too long
-                }
-                String nextCity = safeLower(nxt.getArrivalCity());
-                if (cur.visitedCities.contains(nextCity) && !goal.equals(nextCity)) {
+                int nextCity = net.arrivalCityOf(id);
+                if (nextCity != goal && (nextCity == start || cur.visits(nextCity))) {
                     continue;
                 }
 
-                int gap = transferGapMinutes(last.getArrivalTime(), nxt.getDepartureTime());
-
-                Itinerary nextIt = cloneItinerary(cur.itinerary);
-                nextIt.addLeg(new Leg(nxt, gap, nxt.getDurationMinutes()));
-                nextIt.recomputeTotals();
-
-                Set<String> nextVisited = new HashSet<>(cur.visitedCities);
-                nextVisited.add(nextCity);
+                int elapsed = cur.elapsed + transfers.gap(e) + nxt.getDurationMinutes();
+                if (!withinBounds(toGoal, nextCity, maxTransfers - transfersUsed - 1, elapsed, maxTotal)) {
+                    continue;
+                }
 
-                queue.addLast(new PathState(nextIt, nextVisited));
+                queue.addLast(new PartialPath(id, nextCity, cur, nxt, elapsed));
             }
         }
-
-        return results;
     }
 
     // helpers
-    private static class PathState {
 
-        final Itinerary itinerary;
-        final Set<String> visitedCities;
+    // false when the bounds show no itinerary with at most maxTransfers transfers exists
+    static boolean canReach(TrainNetwork net, int from, int to, int maxTransfers) {
+        return net.getCityBounds().minLegs(from, to) <= Math.max(0, maxTransfers) + 1L;
+    }
 
-        PathState(Itinerary it, Set<String> visitedCities) {
-            this.itinerary = it;
-            this.visitedCities = visitedCities;
+    // false when a path that has reached city after elapsedMinutes cannot get to the goal with
+    // legsLeft more legs, or only so slowly that isOkComparedToDirect would reject it
+    static boolean withinBounds(CityBounds.Goal toGoal, int city, int legsLeft, int elapsedMinutes,
+            int maxTotalMinutes) {
+        if (toGoal.legs(city) > legsLeft) {
+            return false; // UNREACHABLE is larger than any legsLeft
         }
+        return maxTotalMinutes == Integer.MAX_VALUE
+                || (long) elapsedMinutes + toGoal.minutes(city) <= maxTotalMinutes;
     }
 
-    private static Route lastRoute(Itinerary it) {
-        return it.getLegs().get(it.getLegs().size() - 1).getRoute();
+    // duration of the direct route between the two cities, MAX_VALUE when there is none
+    static Integer directDurationMinutes(TrainNetwork net, int from, int to) {
+        try {
+            Route direct = net.getRoute(net.cityName(from), net.cityName(to));
+            if (direct != null) {
+                return direct.getDurationMinutes();
+            }
+            return Integer.MAX_VALUE; //no direct route
+        } catch (Exception e) {
+            return Integer.MAX_VALUE;
+        }
     }
 
-    private static Itinerary cloneItinerary(Itinerary src) {
-        Itinerary copy = new Itinerary();
-        src.getLegs().forEach(L
-                -> copy.addLeg(new Leg(L.getRoute(), L.getTransferFromPrevMinutes(), L.getLegDurationMinutes()))
-        );
-        copy.recomputeTotals();
-        return copy;
+    // legs can depart/arrive anywhere (no city constraints),
+    // but still obey time/type/price/day filters from q
+    static CompiledQuery legFilter(SearchQuery q) {
+        return CompiledQuery.forLegs(q);
     }
 
     // A→B|B→C|... using routeIds when available, else city/time tuple
-    private static String itineraryKey(Itinerary it) {
+    static String itineraryKey(Itinerary it) {
         StringBuilder sb = new StringBuilder();
-        it.getLegs().forEach(L -> {
-            Route r = L.getRoute();
-            String rid = r.getRouteId();
-            if (rid != null && !rid.isBlank()) {
-                sb.append(rid);
-            } else {
-                sb.append(safeLower(r.getDepartureCity()))
-                        .append(">")
-                        .append(safeLower(r.getArrivalCity()))
-                        .append("@")
-                        .append(r.getDepartureTime())
-                        .append("-")
-                        .append(r.getArrivalTime());
-            }
-            sb.append("|");
-        });
+        it.getLegs().forEach(L -> sb.append(legKey(L.getRoute())).append("|"));
         return sb.toString();
     }
 
-    private static String safeLower(String s) {
-        return s == null ? null : s.trim().toLowerCase(Locale.ROOT);
-    }
-
-    private static boolean isBlank(String s) {
-        return s == null || s.trim().isEmpty();
-    }
-
-    // "HH:mm" difference considering next-day roll-over for departures before arrivals. 
-    private static int transferGapMinutes(String arr, String dep) {
-        int a = minutes(arr);
-        int d = minutes(dep);
-        int gap = d - a;
-        return gap >= 0 ? gap : gap + 24 * 60;
+    // one leg's part of itineraryKey: the route id, or its cities and times when it has none
+    static String legKey(Route r) {
+        String rid = r.getRouteId();
+        if (rid != null && !rid.isBlank()) {
+            return rid;
+        }
+        return safeLower(r.getDepartureCity()) + ">" + safeLower(r.getArrivalCity())
+                + "@" + r.getDepartureTime() + "-" + r.getArrivalTime();
     }
 
-    private static int minutes(String hhmm) {
-        String[] p = hhmm.split(":");
-        int h = Integer.parseInt(p[0]);
-        int m = Integer.parseInt(p[1]);
-        return h * 60 + m;
+    private static String safeLower(String s) {
+        return s == null ? null : s.trim().toLowerCase(Locale.ROOT);
     }
 }
@@ -0,0 +1,120 @@
+package search;
+
+import domain.Itinerary;
+import infra.TrainNetwork;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// The BFS engine with the branch under each first leg searched as its own fork-join task.
+// Sequential BFS finds itineraries level by level (legs), and within a level in the order of
+// their first leg, so tagging each result with (legs, first leg, order within its branch) and
+// sorting on that gives back exactly the sequential output. Duplicates (same itineraryKey)
+// are merged in a concurrent map that keeps the earliest tag, whichever thread finds it.
+// Branches can only share keys when their first legs have the same key (a repeated or blank
+// route id); such a branch is searched to the end, since some of its hits may lose the merge.
+public final class ParallelSearchService {
+
+    private ParallelSearchService() {
+    }
+
+    public static List<Itinerary> find(ForkJoinPool pool, TrainNetwork net, SearchQuery q,
+            int maxTransfers, int maxResults) {
+        return find(pool, net, net.cityId(q.getFromCity()), net.cityId(q.getToCity()), q, maxTransfers, maxResults);
+    }
+
+    // city-id version; the cities in q are ignored, only its filters apply
+    public static List<Itinerary> find(ForkJoinPool pool, TrainNetwork net, int start, int goal, SearchQuery q,
+            int maxTransfers, int maxResults) {
+        if (start < 0 || goal < 0 || maxResults <= 0 || !IndirectSearchService.canReach(net, start, goal, maxTransfers)) {
+            return List.of();
+        }
+        List<PartialPath> firstLegs = IndirectSearchService.firstLegs(net, start, goal, q, maxTransfers);
+        boolean[] shared = new boolean[firstLegs.size()]; // an earlier first leg has the same key
+        Set<String> firstKeys = new HashSet<>();
+        for (int b = 0; b < firstLegs.size(); b++) {
+            shared[b] = !firstKeys.add(IndirectSearchService.legKey(net.route(firstLegs.get(b).connection)));
+        }
+        ConcurrentHashMap<String, Hit> hits = new ConcurrentHashMap<>();
+        pool.invoke(new Branches(net, start, goal, q, maxTransfers, maxResults, firstLegs, shared,
+                0, firstLegs.size(), hits));
+
+        List<Hit> ordered = new ArrayList<>(hits.values());
+        Collections.sort(ordered);
+        List<Itinerary> out = new ArrayList<>(Math.min(maxResults, ordered.size()));
+        for (int i = 0; i < ordered.size() && i < maxResults; i++) {
+            out.add(ordered.get(i).itinerary);
+        }
+        return out;
+    }
+
+    // an itinerary and where sequential BFS would have found it
+    private record Hit(int legs, int branch, int seq, Itinerary itinerary) implements Comparable<Hit> {
+        @Override
+        public int compareTo(Hit o) {
+            if (legs != o.legs) return Integer.compare(legs, o.legs);
+            if (branch != o.branch) return Integer.compare(branch, o.branch);
+            return Integer.compare(seq, o.seq);
+        }
+    }
+
+    // first legs [lo, hi), split in halves down to one branch per task
+    @SuppressWarnings("serial")
+    private static final class Branches extends RecursiveAction {
+        private final TrainNetwork net;
+        private final int start;
+        private final int goal;
+        private final SearchQuery q;
+        private final int maxTransfers;
+        private final int maxResults;
+        private final List<PartialPath> firstLegs;
+        private final boolean[] shared;
+        private final int lo;
+        private final int hi;
+        private final ConcurrentHashMap<String, Hit> hits;
+
+        Branches(TrainNetwork net, int start, int goal, SearchQuery q, int maxTransfers, int maxResults,
+                List<PartialPath> firstLegs, boolean[] shared, int lo, int hi, ConcurrentHashMap<String, Hit> hits) {
+            this.net = net;
+            this.start = start;
+            this.goal = goal;
+            this.q = q;
+            this.maxTransfers = maxTransfers;
+            this.maxResults = maxResults;
+            this.firstLegs = firstLegs;
+            this.shared = shared;
+            this.lo = lo;
+            this.hi = hi;
+            this.hits = hits;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new Branches(net, start, goal, q, maxTransfers, maxResults, firstLegs, shared, lo, mid, hits),
+                        new Branches(net, start, goal, q, maxTransfers, maxResults, firstLegs, shared, mid, hi, hits));
+                return;
+            }
+            if (hi == lo) {
+                return;
+            }
+            // one branch; no more than maxResults of it can make the overall first maxResults,
+            // and unless it is shared every key it finds keeps its tag
+            int branch = lo;
+            Set<String> seenKeys = new HashSet<>();
+            int[] seq = { 0 };
+            Deque<PartialPath> queue = new ArrayDeque<>();
+            queue.add(firstLegs.get(branch));
+            IndirectSearchService.breadthFirst(net, start, goal, q, maxTransfers, queue, it -> {
+                String key = IndirectSearchService.itineraryKey(it);
+                if (seenKeys.add(key)) {
+                    Hit hit = new Hit(it.getLegs().size(), branch, seq[0]++, it);
+                    hits.merge(key, hit, (a, b) -> a.compareTo(b) <= 0 ? a : b);
+                }
+                return shared[branch] || seenKeys.size() < maxResults;
+            });
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package search;
+
+import domain.BookingPolicies;
+import domain.Itinerary;
+import domain.ItineraryComparators;
+import domain.Leg;
+import domain.Route;
+import infra.CityBounds;
+import infra.TrainNetwork;
+import infra.TransferGraph;
+import java.util.*;
+
+// Multi-criteria (Pareto) itinerary search, RAPTOR style.
+// Round k extends the labels created in round k-1 by one more leg, so round k holds
+// journeys with exactly k transfers. Each city keeps a bag of non-dominated labels;
+// a new label is dropped as soon as the bag or the destination already has something at
+// least as good on every criterion (total duration, price, transfers).
+public final class ParetoSearchService {
+
+    private static final int DAY_MIN = 24 * 60;
+
+    private ParetoSearchService() {
+    }
+
+    // all non-dominated itineraries, fastest first
+    public static List<Itinerary> find(TrainNetwork net, SearchQuery q, int maxTransfers) {
+        return find(net, net.cityId(q.getFromCity()), net.cityId(q.getToCity()), q, maxTransfers);
+    }
+
+    // city-id version; the cities in q are ignored, only its filters apply
+    public static List<Itinerary> find(TrainNetwork net, int start, int goal, SearchQuery q, int maxTransfers) {
+        if (start < 0 || goal < 0 || !IndirectSearchService.canReach(net, start, goal, maxTransfers)) {
+            return List.of();
+        }
+
+        Integer directDurationMinutes = IndirectSearchService.directDurationMinutes(net, start, goal);
+        int maxTotal = BookingPolicies.maxTotalMinutes(directDurationMinutes);
+        CityBounds.Goal toGoal = net.getCityBounds().toward(goal);
+        CompiledQuery leg = IndirectSearchService.legFilter(q);
+        Criteria criteria = Criteria.of(q.getPriceClass());
+        int maxLayover = BookingPolicies.maxLayoverMinutes();
+        TransferGraph transfers = net.getTransferGraph();
+
+        List<List<Label>> bags = new ArrayList<>(Collections.nCopies(net.getCityCount(), null)); // city -> non-dominated labels, all rounds
+        List<Label> goalBag = new ArrayList<>();
+        List<Label> marked = new ArrayList<>();
+
+        // round 0: first legs out of the origin
+        for (int k = net.departuresStart(start); k < net.departuresEnd(start); k++) {
+            int id = net.departureEdge(k);
+            Route r = net.route(id);
+            if (!leg.matches(r)) {
+                continue;
+            }
+            int dep = r.getDepartureMinuteOfDay();
+            Label l = new Label(id, r, null, dep, dep + r.getDurationMinutes(), dep,
+                    r.getFirstClassPrice(), r.getSecondClassPrice(), 0);
+            if (!IndirectSearchService.withinBounds(toGoal, net.arrivalCityOf(id), Math.max(0, maxTransfers),
+                    l.duration(), maxTotal)) {
+                continue;
+            }
+            offer(l, net.arrivalCityOf(id), goal, bags, goalBag, marked, criteria);
+        }
+
+        for (int round = 1; round <= maxTransfers && !marked.isEmpty(); round++) {
+            List<Label> prev = marked;
+            marked = new ArrayList<>();
+
+            for (Label from : prev) {
+                if (from.dominatedBy != null) {
+                    continue; // pruned after it was marked
+                }
+                for (int k = transfers.start(from.connection); k < transfers.end(from.connection); k++) {
+                    int id = transfers.edge(k);
+                    Route nxt = net.route(id);
+                    if (!leg.matches(nxt)) {
+                        continue;
+                    }
+                    int nextCity = net.arrivalCityOf(id);
+                    if (nextCity != goal && (nextCity == start || from.visits(net, nextCity))) {
+                        continue;
+                    }
+
+                    // the next occurrence of nxt after we arrived (the layover is always < 1 day)
+                    int gap = Math.floorMod(nxt.getDepartureMinuteOfDay() - from.arrAbs, DAY_MIN);
+                    if (gap > maxLayover) {
+                        continue;
+                    }
+                    int dep = from.arrAbs + gap;
+                    Label l = new Label(id, nxt, from, dep, dep + nxt.getDurationMinutes(), from.startAbs,
+                            from.first + nxt.getFirstClassPrice(),
+                            from.second + nxt.getSecondClassPrice(),
+                            round);
+                    if (!IndirectSearchService.withinBounds(toGoal, nextCity, maxTransfers - round, l.duration(), maxTotal)) {
+                        continue; // too slow or too many transfers left to reach the goal
+                    }
+                    offer(l, nextCity, goal, bags, goalBag, marked, criteria);
+                }
+            }
+        }
+
+        List<Itinerary> results = new ArrayList<>();
+        Set<String> seenKeys = new HashSet<>();
+        for (Label l : goalBag) {
+            Itinerary it = l.toItinerary();
+            if (!BookingPolicies.isOkComparedToDirect(it, directDurationMinutes)) {
+                continue;
+            }
+            if (seenKeys.add(IndirectSearchService.itineraryKey(it))) {
+                results.add(it);
+            }
+        }
+        results.sort(ItineraryComparators.BY_TOTAL_DURATION
+                .thenComparing(ItineraryComparators.BY_TRANSFERS)
+                .thenComparing(ItineraryComparators.BY_SECOND_CLASS_PRICE));
+        return results;
+    }
+
+    // inserts l into its bag unless dominated; removes whatever l dominates
+    private static void offer(Label l, int city, int goal, List<List<Label>> bags, List<Label> goalBag,
+            List<Label> marked, Criteria criteria) {
+        // target pruning: any extension only gets slower, pricier and adds a transfer
+        for (Label g : goalBag) {
+            if (criteria.dominates(g, l, city == goal ? 0 : 1)) {
+                return;
+            }
+        }
+
+        if (city == goal) {
+            goalBag.removeIf(g -> criteria.dominates(l, g, 0));
+            goalBag.add(l);
+            return;
+        }
+
+        // at intermediate cities labels are only comparable when they arrive on the same train,
+        // since arrival time and train type decide which layovers are allowed next
+        List<Label> bag = bags.get(city);
+        if (bag == null) {
+            bag = new ArrayList<>();
+            bags.set(city, bag);
+        }
+        for (Label b : bag) {
+            if (b.sameArrival(l) && criteria.dominates(b, l, 0)) {
+                return;
+            }
+        }
+        bag.removeIf(b -> {
+            if (b.sameArrival(l) && criteria.dominates(l, b, 0)) {
+                b.dominatedBy = l;
+                return true;
+            }
+            return false;
+        });
+        bag.add(l);
+        marked.add(l);
+    }
+
+    // which criteria take part in dominance, price classes follow SearchQuery.priceClass
+    private record Criteria(boolean first, boolean second) {
+
+        static Criteria of(String priceClass) {
+            String cls = priceClass == null ? "ANY" : priceClass.toUpperCase(Locale.ROOT);
+            return switch (cls) {
+                case "FIRST" -> new Criteria(true, false);
+                case "SECOND" -> new Criteria(false, true);
+                default -> new Criteria(true, true);
+            };
+        }
+
+        // a is at least as good as b everywhere; b still needs extraTransfers more transfers
+        boolean dominates(Label a, Label b, int extraTransfers) {
+            return a.duration() <= b.duration()
+                    && a.transfers <= b.transfers + extraTransfers
+                    && (!first || a.first <= b.first)
+                    && (!second || a.second <= b.second);
+        }
+    }
+
+    private static final class Label {
+
+        final int connection;   // connection id of the leg that arrives at this label's city
+        final Route route;
+        final Label parent;
+        final int depAbs;       // minutes since 00:00 of the first day
+        final int arrAbs;
+        final int startAbs;
+        final int first;
+        final int second;
+        final int transfers;
+        Label dominatedBy;
+
+        Label(int connection, Route route, Label parent, int depAbs, int arrAbs, int startAbs,
+                int first, int second, int transfers) {
+            this.connection = connection;
+            this.route = route;
+            this.parent = parent;
+            this.depAbs = depAbs;
+            this.arrAbs = arrAbs;
+            this.startAbs = startAbs;
+            this.first = first;
+            this.second = second;
+            this.transfers = transfers;
+        }
+
+        int duration() {
+            return arrAbs - startAbs;
+        }
+
+        boolean sameArrival(Label o) {
+            return connection == o.connection && arrAbs == o.arrAbs;
+        }
+
+        boolean visits(TrainNetwork net, int city) {
+            for (Label l = this; l != null; l = l.parent) {
+                if (net.arrivalCityOf(l.connection) == city) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        Itinerary toItinerary() {
+            Deque<Label> chain = new ArrayDeque<>();
+            for (Label l = this; l != null; l = l.parent) {
+                chain.addFirst(l);
+            }
+            Itinerary it = new Itinerary();
+            Label prev = null;
+            for (Label l : chain) {
+                int gap = prev == null ? 0 : l.depAbs - prev.arrAbs;
+                it.addLeg(new Leg(l.route, gap, l.route.getDurationMinutes()));
+                prev = l;
+            }
+            it.recomputeTotals();
+            return it;
+        }
+    }
+}
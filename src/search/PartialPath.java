@@ -0,0 +1,90 @@
+package search;
+
+import domain.Itinerary;
+import domain.Leg;
+import domain.Route;
+import domain.TimeUtil;
+import infra.TrainNetwork;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+// A path out of the start city during a search: its last connection plus a pointer to the
+// path before it, with the totals so far. Never modified, so every extension shares its
+// prefix and costs one object. The Itinerary is only built for paths that are kept.
+class PartialPath {
+
+    final int connection;
+    final int city;          // arrival city of connection
+    final PartialPath parent;
+    final int legs;
+    final int elapsed;       // total duration so far, layovers included
+    final int startMinute;   // departure minute of day of the first leg
+    final int first;         // prices so far
+    final int second;
+    private final long cityBits; // bit (city & 63) of every arrival city on the path
+
+    // first leg
+    PartialPath(int connection, int city, Route r) {
+        this(connection, city, null, r, r.getDurationMinutes());
+    }
+
+    // parent extended by connection, elapsed is parent.elapsed + layover + r's duration
+    PartialPath(int connection, int city, PartialPath parent, Route r, int elapsed) {
+        this.connection = connection;
+        this.city = city;
+        this.parent = parent;
+        this.elapsed = elapsed;
+        if (parent == null) {
+            startMinute = r.getDepartureMinuteOfDay();
+            legs = 1;
+            first = r.getFirstClassPrice();
+            second = r.getSecondClassPrice();
+            cityBits = bit(city);
+        } else {
+            startMinute = parent.startMinute;
+            legs = parent.legs + 1;
+            first = parent.first + r.getFirstClassPrice();
+            second = parent.second + r.getSecondClassPrice();
+            cityBits = parent.cityBits | bit(city);
+        }
+    }
+
+    // minutes from 00:00 of the first leg's day until the path arrives
+    final int arrivalAbs() {
+        return startMinute + elapsed;
+    }
+
+    // whether c is the arrival city of one of the legs; the start city is not included
+    final boolean visits(int c) {
+        if ((cityBits & bit(c)) == 0) {
+            return false; // no city on the path shares c's bit, no need to walk it
+        }
+        for (PartialPath p = this; p != null; p = p.parent) {
+            if (p.city == c) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    final Itinerary toItinerary(TrainNetwork net) {
+        Deque<PartialPath> chain = new ArrayDeque<>(legs);
+        for (PartialPath p = this; p != null; p = p.parent) {
+            chain.addFirst(p);
+        }
+        Itinerary it = new Itinerary();
+        Route prev = null;
+        for (PartialPath p : chain) {
+            Route r = net.route(p.connection);
+            int gap = prev == null ? 0 : TimeUtil.diff(prev.getArrivalMinuteOfDay(), r.getDepartureMinuteOfDay());
+            it.addLeg(new Leg(r, gap, r.getDurationMinutes()));
+            prev = r;
+        }
+        it.recomputeTotals();
+        return it;
+    }
+
+    private static long bit(int city) {
+        return 1L << (city & 63);
+    }
+}
@@ -0,0 +1,308 @@
+package search;
+
+import domain.BookingPolicies;
+import domain.Itinerary;
+import domain.Leg;
+import domain.Route;
+import domain.TimeUtil;
+import infra.CityBounds;
+import infra.TrainNetwork;
+import infra.TransferGraph;
+import java.time.LocalDate;
+import java.util.*;
+
+// Profile (range) search: every worthwhile departure in a window, in one pass.
+// "From A to B between 06:00 and 14:00" asks for the journeys that are not beaten by another
+// one leaving later and arriving no later. The timetable is laid out over a few days from
+// 00:00 of the search day (as in the connection scan) and walked once backwards in departure
+// time. For every connection on every day, and every number of transfers still allowed, it
+// keeps the earliest arrival at the goal when riding that connection, and which connection to
+// change to for it; connections that reach the goal end there. Later departures are settled
+// first, so each connection only looks at connections already done: the departures of its
+// arrival city that the layover rules allow. The window then only has to be read off the
+// origin's departures, latest first, keeping each one that arrives earlier than all later ones.
+//
+// The window (q's depStart/depEnd) applies to the first departure; the other filters apply to
+// every leg. Like the other engines: layover rules, maxTransfers, no city twice and the
+// direct-route policy. The backward pass does not know which cities a journey passed, so when
+// a departure's fastest journey passes one twice, the fastest one on it that does not is
+// searched for separately (best first, with the pass's arrivals as bounds).
+public final class ProfileSearchService {
+
+    private static final int DAY_MIN = 24 * 60;
+    static final int NONE = Integer.MAX_VALUE;
+
+    private ProfileSearchService() {
+    }
+
+    // the Pareto set of departure vs arrival time, earliest departure first
+    public static List<Itinerary> find(TrainNetwork net, SearchQuery q, int maxTransfers) {
+        return find(net, net.cityId(q.getFromCity()), net.cityId(q.getToCity()), q, maxTransfers, null);
+    }
+
+    // the same for a travel date: connections only run on their days of operation
+    public static List<Itinerary> find(TrainNetwork net, SearchQuery q, LocalDate date, int maxTransfers) {
+        ServiceCalendar calendar = new ServiceCalendar(net, date, DatedSearchService.defaultHorizonDays(maxTransfers));
+        return find(net, net.cityId(q.getFromCity()), net.cityId(q.getToCity()), q, maxTransfers, calendar);
+    }
+
+    // city-id version; the cities in q are ignored, only its filters apply
+    static List<Itinerary> find(TrainNetwork net, int start, int goal, SearchQuery q, int maxTransfers,
+            ServiceCalendar calendar) {
+        if (start < 0 || goal < 0 || start == goal || !IndirectSearchService.canReach(net, start, goal, maxTransfers)) {
+            return List.of();
+        }
+        int n = net.getConnectionCount();
+        int levels = Math.max(0, maxTransfers) + 1;  // level k: at most k more transfers
+        int days = DatedSearchService.defaultHorizonDays(maxTransfers);
+        if (calendar != null) {
+            days = Math.min(days, calendar.horizonDays());
+        }
+
+        Integer directDurationMinutes = IndirectSearchService.directDurationMinutes(net, start, goal);
+        int maxTotal = BookingPolicies.maxTotalMinutes(directDurationMinutes);
+        int windowStart = Math.max(0, q.getDepStartMinute());
+        int windowEnd = q.getDepEndMinute() < 0 ? DAY_MIN - 1 : q.getDepEndMinute();
+        // nothing leaving after the window closes may arrive later than this
+        long latestArrival = maxTotal == Integer.MAX_VALUE ? Long.MAX_VALUE : (long) windowEnd + maxTotal;
+        if (latestArrival != Long.MAX_VALUE) {
+            days = (int) Math.min(days, latestArrival / DAY_MIN + 1);
+        }
+
+        Table table = table(net, start, goal, CompiledQuery.forLegs(withoutWindow(q)), levels, days, calendar,
+                windowStart, latestArrival);
+        int[][] arrival = table.arrival();
+
+        // latest departure first; keep a departure when it arrives before every later one
+        List<Itinerary> out = new ArrayList<>();
+        int bestArrival = NONE;
+        for (int e = net.departuresEnd(start) - 1; e >= net.departuresStart(start); e--) {
+            int s = net.departureEdge(e);
+            int depMin = net.route(s).getDepartureMinuteOfDay();
+            if (depMin < windowStart || depMin > windowEnd) {
+                continue;
+            }
+            int arr = arrival[levels - 1][s]; // day 0
+            if (arr == NONE || arr >= bestArrival || (long) arr - depMin > maxTotal) {
+                continue;
+            }
+            int k = 0;
+            while (arrival[k][s] != arr) k++; // fewest transfers that still arrive then
+            int[] journey = follow(net, n, s, k, table.next());
+            if (journey == null) {
+                // the fastest journey passes a city twice; take the fastest one that does not
+                journey = simplest(net, table, goal, s, levels - 1);
+                if (journey == null) {
+                    continue;
+                }
+                arr = arrival[0][journey[journey.length - 1]];
+                if (arr >= bestArrival || (long) arr - depMin > maxTotal) {
+                    continue;
+                }
+            }
+            out.add(materialize(net, n, journey));
+            bestArrival = arr;
+        }
+        Collections.reverse(out);
+        return out;
+    }
+
+    // The backward pass, for the goal and the connection instances day * n + id of the horizon:
+    // arrival[k][instance] is the earliest arrival at the goal riding that instance with at most
+    // k more transfers (NONE if it cannot get there) and next[k][instance] the instance changed to,
+    // -1 at the goal. Paths never pass through start (-1: any city may be passed). Instances
+    // leaving before windowStart or unable to arrive by latestArrival are left at NONE.
+    static Table table(TrainNetwork net, int start, int goal, CompiledQuery leg, int levels, int days,
+            ServiceCalendar calendar, int windowStart, long latestArrival) {
+        int n = net.getConnectionCount();
+        TransferGraph transfers = net.getTransferGraph();
+        CityBounds.Goal toGoal = net.getCityBounds().toward(goal);
+        boolean[] legOk = new boolean[n];
+        int[] depMin = new int[n];
+        for (int i = 0; i < n; i++) {
+            legOk[i] = leg.matches(net.route(i));
+            depMin[i] = net.route(i).getDepartureMinuteOfDay();
+        }
+
+        // instance = day * n + connection id; arrival[k][instance] and the connection changed to
+        int[][] arrival = new int[levels][days * n];
+        int[][] next = new int[levels][days * n];
+        for (int k = 0; k < levels; k++) {
+            Arrays.fill(arrival[k], NONE);
+            Arrays.fill(next[k], -1);
+        }
+
+        for (int day = days - 1; day >= 0; day--) {
+            for (int i = n - 1; i >= 0; i--) {
+                if (!legOk[i] || (calendar != null && !calendar.runsOnDay(i, day))) {
+                    continue;
+                }
+                if (day * DAY_MIN + depMin[i] < windowStart) {
+                    break; // leaves before any journey in the window does
+                }
+                int inst = day * n + i;
+                Route r = net.route(i);
+                int arrAbs = day * DAY_MIN + depMin[i] + r.getDurationMinutes();
+                int city = net.arrivalCityOf(i);
+                if (city != goal && (toGoal.legs(city) > levels - 1
+                        || (long) arrAbs + toGoal.minutes(city) > latestArrival)) {
+                    continue; // cannot reach the goal with the transfers left, or in time
+                }
+                if (city == goal) {
+                    for (int k = 0; k < levels; k++) arrival[k][inst] = arrAbs;
+                    continue;
+                }
+                if (levels == 1 || city == start) {
+                    continue;
+                }
+                // the changes allowed after i, soonest first: those later on its arrival day, then
+                // those past midnight (edges are in order of departure)
+                int arrMin = arrAbs % DAY_MIN;
+                int from = transfers.start(i), to = transfers.end(i);
+                int split = from;
+                while (split < to && depMin[transfers.edge(split)] < arrMin) {
+                    split++;
+                }
+                for (int m = 0; m < to - from; m++) {
+                    int e = split + m < to ? split + m : from + (split + m - to);
+                    int d = (arrAbs + transfers.gap(e)) / DAY_MIN;
+                    if (d >= days) {
+                        continue;
+                    }
+                    int candidate = d * n + transfers.edge(e);
+                    if (arrival[levels - 2][candidate] == NONE) {
+                        continue; // leads nowhere in time (also skips connections not running that day)
+                    }
+                    for (int k = 1; k < levels; k++) {
+                        if (arrival[k - 1][candidate] < arrival[k][inst]) {
+                            arrival[k][inst] = arrival[k - 1][candidate];
+                            next[k][inst] = candidate;
+                        }
+                    }
+                }
+            }
+        }
+        return new Table(n, arrival, next);
+    }
+
+    record Table(int n, int[][] arrival, int[][] next) {
+    }
+
+    // the query with the departure window dropped, for the legs after the first
+    private static SearchQuery withoutWindow(SearchQuery q) {
+        SearchQuery c = new SearchQuery(null, null, null, null, q.getArrStart(), q.getArrEnd(),
+                q.getTrainType(), q.getDays(), q.getPriceClass(), q.getMaxPrice(), q.getSortBy(), q.getSortDir());
+        c.normalize();
+        return c;
+    }
+
+    // the instances of the journey riding inst with k more transfers, following the connections
+    // changed to; null when it passes a city twice
+    static int[] follow(TrainNetwork net, int n, int inst, int k, int[][] next) {
+        int[] journey = new int[k + 1];
+        int len = 0;
+        Set<Integer> seen = new HashSet<>();
+        seen.add(net.departureCityOf(inst % n));
+        while (inst >= 0) {
+            if (!seen.add(net.arrivalCityOf(inst % n))) {
+                return null;
+            }
+            journey[len++] = inst;
+            inst = k > 0 ? next[k][inst] : -1;
+            k--;
+        }
+        return Arrays.copyOf(journey, len);
+    }
+
+    // The earliest arriving journey riding inst with at most k more transfers that passes no city
+    // twice (fewest legs on a tie), as its instances; null if there is none. Best first over
+    // partial journeys, bounded by the table's arrivals, which ignore the repeated cities.
+    static int[] simplest(TrainNetwork net, Table table, int goal, int inst, int k) {
+        int n = table.n();
+        int[][] arrival = table.arrival();
+        int days = arrival[0].length / n;
+        TransferGraph transfers = net.getTransferGraph();
+        PriorityQueue<Step> open = new PriorityQueue<>();
+        long seq = 0;
+        if (arrival[k][inst] != NONE) {
+            open.add(new Step(inst, k, null, arrival[k][inst], seq++));
+        }
+        while (!open.isEmpty()) {
+            Step cur = open.poll();
+            int c = cur.inst % n;
+            if (net.arrivalCityOf(c) == goal) {
+                int[] journey = new int[cur.legs];
+                for (Step st = cur; st != null; st = st.parent) journey[st.legs - 1] = st.inst;
+                return journey;
+            }
+            if (cur.k == 0) {
+                continue;
+            }
+            Route r = net.route(c);
+            int arrAbs = cur.inst / n * DAY_MIN + r.getDepartureMinuteOfDay() + r.getDurationMinutes();
+            for (int e = transfers.start(c); e < transfers.end(c); e++) {
+                int d = (arrAbs + transfers.gap(e)) / DAY_MIN;
+                if (d >= days) {
+                    continue;
+                }
+                int candidate = d * n + transfers.edge(e);
+                int bound = arrival[cur.k - 1][candidate];
+                if (bound == NONE || cur.visits(net, n, net.arrivalCityOf(transfers.edge(e)))) {
+                    continue;
+                }
+                open.add(new Step(candidate, cur.k - 1, cur, bound, seq++));
+            }
+        }
+        return null;
+    }
+
+    // a partial journey for simplest: its last instance and the transfers still allowed
+    private static final class Step implements Comparable<Step> {
+        final int inst;
+        final int k;
+        final Step parent;
+        final int legs;
+        final int bound;   // earliest arrival at the goal any completion can have
+        final long seq;
+
+        Step(int inst, int k, Step parent, int bound, long seq) {
+            this.inst = inst;
+            this.k = k;
+            this.parent = parent;
+            this.legs = parent == null ? 1 : parent.legs + 1;
+            this.bound = bound;
+            this.seq = seq;
+        }
+
+        // whether the journey so far departs from or arrives at city
+        boolean visits(TrainNetwork net, int n, int city) {
+            for (Step st = this; st != null; st = st.parent) {
+                if (net.arrivalCityOf(st.inst % n) == city
+                        || (st.parent == null && net.departureCityOf(st.inst % n) == city)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public int compareTo(Step o) {
+            if (bound != o.bound) return Integer.compare(bound, o.bound);
+            if (legs != o.legs) return Integer.compare(legs, o.legs);
+            return Long.compare(seq, o.seq);
+        }
+    }
+
+    private static Itinerary materialize(TrainNetwork net, int n, int[] journey) {
+        Itinerary it = new Itinerary();
+        Route prev = null;
+        for (int inst : journey) {
+            Route r = net.route(inst % n);
+            int gap = prev == null ? 0 : TimeUtil.diff(prev.getArrivalMinuteOfDay(), r.getDepartureMinuteOfDay());
+            it.addLeg(new Leg(r, gap, r.getDurationMinutes()));
+            prev = r;
+        }
+        it.recomputeTotals();
+        return it;
+    }
+}
@@ -22,16 +22,16 @@ public final class RouteFilters {
         return true;
     }
 
-    // dep/arr as "HH:mm" strings 
+    // dep/arr as minutes since midnight; query bounds are -1 when not set
     static boolean matchesTimes(SearchQuery q, Route r) {
-        String dep = r.getDepartureTime();
-        String arr = r.getArrivalTime();
+        int dep = r.getDepartureMinuteOfDay();
+        int arr = r.getArrivalMinuteOfDay();
 
-        if (q.getDepStart() != null && dep.compareTo(q.getDepStart()) < 0) return false;
-        if (q.getDepEnd()   != null && dep.compareTo(q.getDepEnd())   > 0) return false;
+        if (q.getDepStartMinute() >= 0 && dep < q.getDepStartMinute()) return false;
+        if (q.getDepEndMinute()   >= 0 && dep > q.getDepEndMinute())   return false;
 
-        if (q.getArrStart() != null && arr.compareTo(q.getArrStart()) < 0) return false;
-        if (q.getArrEnd()   != null && arr.compareTo(q.getArrEnd())   > 0) return false;
+        if (q.getArrStartMinute() >= 0 && arr < q.getArrStartMinute()) return false;
+        if (q.getArrEndMinute()   >= 0 && arr > q.getArrEndMinute())   return false;
 
         return true;
     }
@@ -41,18 +41,11 @@ public final class RouteFilters {
         return r.getTrainType() != null && r.getTrainType().equalsIgnoreCase(q.getTrainType());
     }
 
-    // q.days are like {"MON","TUE",...}; r has getDaysSet()
+    // q.days are like {"MON","TUE",...}, compiled to a mask; any overlap with the route's days
     static boolean matchesDays(SearchQuery q, Route r) {
         Set<String> wanted = q.getDays();
         if (wanted == null || wanted.isEmpty()) return true;
-
-        Set<String> operates = r.getDaysSet();
-        if (operates == null || operates.isEmpty()) return false;
-
-        for (String d : wanted) {
-            if (operates.contains(d)) return true;   // any overlap
-        }
-        return false;
+        return (q.getDaysMask() & r.getDaysMask()) != 0;
     }
 
     static boolean matchesPrice(SearchQuery q, Route r) {
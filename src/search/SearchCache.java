@@ -0,0 +1,179 @@
+package search;
+
+import domain.Itinerary;
+import domain.Route;
+import infra.TrainNetwork;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Bounded cache in front of SearchService.direct, IndirectSearchService.find,
+ * TopKSearchService.stream and DatedSearchService.stream.
+ *
+ * Entries are keyed on the canonical form of the query plus maxTransfers/maxResults, the
+ * kind of search (direct, the indirect engine, or top-k with its travel date) and the
+ * network version. The least recently used entry goes first when
+ * the cache is full, and entries older than the TTL are dropped when they are next looked
+ * up. Seeing a newer network version empties the cache; searches against an older version
+ * than the newest one seen are answered but not stored. Cached lists are immutable and
+ * shared between callers.
+ */
+public final class SearchCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 1024;
+    public static final Duration DEFAULT_TTL = Duration.ofMinutes(10);
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LinkedHashMap<Key, Entry> entries;
+
+    // guarded by this
+    private long newestVersion = Long.MIN_VALUE;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+    private long invalidations;
+
+    public SearchCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL);
+    }
+
+    public SearchCache(int maxEntries, Duration ttl) {
+        if (maxEntries <= 0) throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+        if (ttl == null || ttl.isNegative() || ttl.isZero()) throw new IllegalArgumentException("ttl must be positive: " + ttl);
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > SearchCache.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public List<Route> direct(TrainNetwork net, SearchQuery q) {
+        Key key = new Key(net.getVersion(), "DIRECT", q.canonical(), -1, -1);
+        List<Route> hit = lookup(key);
+        if (hit != null) return hit;
+        return store(key, SearchService.direct(net, q));
+    }
+
+    public List<Itinerary> find(TrainNetwork net, SearchQuery q, int maxTransfers, int maxResults) {
+        Key key = new Key(net.getVersion(), IndirectSearchService.getEngine().name(), q.canonical(), maxTransfers, maxResults);
+        List<Itinerary> hit = lookup(key);
+        if (hit != null) return hit;
+        return store(key, IndirectSearchService.find(net, q, maxTransfers, maxResults));
+    }
+
+    // a hit streams the stored list; a miss streams the search as it runs and stores
+    // the results only if the caller reads the stream to the end
+    public Stream<Itinerary> stream(TrainNetwork net, SearchQuery q, int maxTransfers, int k) {
+        return stream(new Key(net.getVersion(), "TOPK", q.canonical(), maxTransfers, k),
+                () -> TopKSearchService.iterator(net, q, maxTransfers, k));
+    }
+
+    // DatedSearchService.stream, cached per travel date
+    public Stream<Itinerary> stream(TrainNetwork net, SearchQuery q, LocalDate date, int maxTransfers, int k) {
+        return stream(new Key(net.getVersion(), "TOPK " + date, q.canonical(), maxTransfers, k),
+                () -> DatedSearchService.stream(net, q, date, maxTransfers, k).iterator());
+    }
+
+    private Stream<Itinerary> stream(Key key, Supplier<Iterator<Itinerary>> searchFn) {
+        List<Itinerary> hit = lookup(key);
+        if (hit != null) return hit.stream();
+        Iterator<Itinerary> search = searchFn.get();
+        List<Itinerary> seen = new ArrayList<>();
+        Iterator<Itinerary> recording = new Iterator<>() {
+            private boolean stored;
+
+            @Override
+            public boolean hasNext() {
+                if (search.hasNext()) return true;
+                if (!stored) {
+                    store(key, seen);
+                    stored = true;
+                }
+                return false;
+            }
+
+            @Override
+            public Itinerary next() {
+                Itinerary it = search.next();
+                seen.add(it);
+                return it;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(recording,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    // null on a miss; drops the entry when it has expired or the network has moved on
+    @SuppressWarnings("unchecked")
+    private synchronized <T> List<T> lookup(Key key) {
+        if (key.version > newestVersion) {
+            if (!entries.isEmpty()) invalidations++;
+            entries.clear();
+            newestVersion = key.version;
+        }
+        Entry e = entries.get(key);
+        if (e != null && System.nanoTime() - e.createdNanos > ttlNanos) {
+            entries.remove(key);
+            expirations++;
+            e = null;
+        }
+        if (e == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return (List<T>) e.results;
+    }
+
+    // the search itself runs outside the lock, two threads may compute the same key once each
+    private synchronized <T> List<T> store(Key key, List<T> results) {
+        List<T> frozen = List.copyOf(results);
+        if (key.version == newestVersion) {
+            entries.put(key, new Entry(frozen, System.nanoTime()));
+        }
+        return frozen;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hits, misses, evictions, expirations, invalidations, entries.size(), maxEntries);
+    }
+
+    // hits/misses of lookups, entries dropped for size or age, and times a new network version emptied the cache
+    public record Stats(long hits, long misses, long evictions, long expirations, long invalidations,
+                        int size, int maxEntries) {
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    private record Key(long version, String kind, SearchQuery query,
+                       int maxTransfers, int maxResults) {
+    }
+
+    private record Entry(List<?> results, long createdNanos) {
+    }
+}
@@ -1,5 +1,6 @@
 package search;
 
+import domain.DayMask;
 import java.util.*;
 
 
@@ -18,6 +19,14 @@ public class SearchQuery {
     private String sortBy;     // DURATION | PRICE_FIRST | PRICE_SECOND
     private String sortDir;    // ASC | DESC
 
+    // the four time bounds as minutes since midnight, -1 when not set
+    private final int depStartMin;
+    private final int depEndMin;
+    private final int arrStartMin;
+    private final int arrEndMin;
+    // days compiled to DayMask bits; only meaningful when days is not empty
+    private int daysMask;
+
     // constructor
     public SearchQuery(String fromCity, String toCity, String depStart, String depEnd,
                        String arrStart, String arrEnd, String trainType, Set<String> days,
@@ -34,6 +43,24 @@ public class SearchQuery {
         this.maxPrice = maxPrice;
         this.sortBy = sortBy;
         this.sortDir = sortDir;
+        this.depStartMin = minuteOf(depStart);
+        this.depEndMin = minuteOf(depEnd);
+        this.arrStartMin = minuteOf(arrStart);
+        this.arrEndMin = minuteOf(arrEnd);
+        this.daysMask = DayMask.fromCodes(this.days);
+    }
+
+    // "HH:mm" -> minutes since midnight; -1 for null or malformed (validate() reports those)
+    private static int minuteOf(String hhmm) {
+        if (hhmm == null) return -1;
+        int colon = hhmm.indexOf(':');
+        if (colon < 1) return -1;
+        try {
+            return Integer.parseInt(hhmm.substring(0, colon).trim()) * 60
+                    + Integer.parseInt(hhmm.substring(colon + 1).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
     }
 
     // normalize
@@ -52,6 +79,7 @@ public class SearchQuery {
                 normalizedDays.add(s.length() >= 3 ? s.substring(0, 3) : s);
             }
             days = normalizedDays;
+            daysMask = DayMask.fromCodes(days);
         }
     }
 
@@ -82,6 +110,55 @@ public class SearchQuery {
         if (maxPrice != null && maxPrice < 0)            throw new IllegalArgumentException("Invalid maxPrice: " + maxPrice);
     }
     
+    // Normalized copy with validate()'s defaults filled in, codes upper-cased and times written
+    // as "HH:mm", so queries that search for the same thing are equal. Used as a cache key;
+    // do not normalize() a canonical query again.
+    public SearchQuery canonical() {
+        SearchQuery c = new SearchQuery(
+                fromCity, toCity,
+                clock(depStartMin, depStart), clock(depEndMin, depEnd),
+                clock(arrStartMin, arrStart), clock(arrEndMin, arrEnd),
+                trainType == null || trainType.isBlank() ? null : trainType,
+                days,
+                upper(priceClass, "ANY"), maxPrice,
+                upper(sortBy, "DURATION"), upper(sortDir, "ASC"));
+        c.normalize();
+        return c;
+    }
+
+    private static String clock(int minute, String raw) {
+        return minute < 0 ? raw : String.format("%02d:%02d", minute / 60, minute % 60);
+    }
+
+    private static String upper(String s, String dflt) {
+        return s == null ? dflt : s.trim().toUpperCase(Locale.ROOT);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SearchQuery that)) return false;
+        return Objects.equals(fromCity, that.fromCity)
+                && Objects.equals(toCity, that.toCity)
+                && Objects.equals(depStart, that.depStart)
+                && Objects.equals(depEnd, that.depEnd)
+                && Objects.equals(arrStart, that.arrStart)
+                && Objects.equals(arrEnd, that.arrEnd)
+                && Objects.equals(trainType, that.trainType)
+                && Objects.equals(days, that.days)
+                && Objects.equals(priceClass, that.priceClass)
+                && Objects.equals(maxPrice, that.maxPrice)
+                && Objects.equals(sortBy, that.sortBy)
+                && Objects.equals(sortDir, that.sortDir);
+    }
+
+    // normalize() changes the hash, so only hash queries that are no longer modified
+    @Override
+    public int hashCode() {
+        return Objects.hash(fromCity, toCity, depStart, depEnd, arrStart, arrEnd,
+                trainType, days, priceClass, maxPrice, sortBy, sortDir);
+    }
+
     // getters
     public String getFromCity()   { return fromCity; }
     public String getToCity()     { return toCity; }
@@ -89,8 +166,13 @@ public class SearchQuery {
     public String getDepEnd()     { return depEnd; }
     public String getArrStart()   { return arrStart; }
     public String getArrEnd()     { return arrEnd; }
+    public int getDepStartMinute() { return depStartMin; }
+    public int getDepEndMinute()   { return depEndMin; }
+    public int getArrStartMinute() { return arrStartMin; }
+    public int getArrEndMinute()   { return arrEndMin; }
     public String getTrainType()  { return trainType; }
     public Set<String> getDays()  { return days; }
+    public int getDaysMask()      { return daysMask; }
     public String getPriceClass() { return priceClass; }
     public Integer getMaxPrice()  { return maxPrice; }
     public String getSortBy()     { return sortBy; }
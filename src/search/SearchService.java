@@ -3,28 +3,45 @@ package search;
 import domain.Route;
 import infra.TrainNetwork;
 
+import java.time.DayOfWeek;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Stream;
 
-// Runs a direct search: pick candidates -> filter -> sort 
+// Runs a direct search: pick candidates -> filter -> sort
 public final class SearchService {
     private SearchService() {}
 
     public static List<Route> direct(TrainNetwork net, SearchQuery q) {
-        // start from an indexed subset if possible
-        Stream<Route> base = (q.getFromCity() != null)
-                ? net.getRoutesFrom(q.getFromCity()).stream()
-                : net.getAllRoutes().stream();
+        // start from an indexed subset if possible; with a departure city the index
+        // already applies the city clauses, so the predicate skips them
+        List<Route> base = candidates(net, q);
+        CompiledQuery filter = q.getFromCity() != null ? CompiledQuery.forLegs(q) : CompiledQuery.of(q);
 
         // choose comparator based on sortBy and sortDir
         Comparator<Route> cmp = Comparators.maybeReverse(
                 Comparators.choose(q), q.getSortDir());
 
         // filter then sort
-        return base
-                .filter(r -> RouteFilters.matches(q, r))
-                .sorted(cmp)
-                .toList();
+        List<Route> out = new ArrayList<>();
+        for (Route r : base) {
+            if (filter.matches(r)) out.add(r);
+        }
+        out.sort(cmp);
+        return List.copyOf(out);
+    }
+
+    // routes of the city pair or from the departure city, else the day bucket when a single day is asked for
+    private static List<Route> candidates(TrainNetwork net, SearchQuery q) {
+        if (q.getFromCity() != null) {
+            return q.getToCity() != null
+                    ? net.getRoutes(q.getFromCity(), q.getToCity())
+                    : net.getRoutesFrom(q.getFromCity());
+        }
+        int days = q.getDaysMask();
+        if (!q.getDays().isEmpty() && Integer.bitCount(days) == 1) {
+            return net.getRoutesOn(DayOfWeek.of(Integer.numberOfTrailingZeros(days) + 1));
+        }
+        return net.getAllRoutes();
     }
 }
@@ -0,0 +1,49 @@
+package search;
+
+import infra.TrainNetwork;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+
+// The travel date and the days after it, for dated searches. Time is counted in minutes from
+// 00:00 of the travel date; a connection can be boarded at such a time when it runs on that
+// day's weekday (TrainNetwork's per-day service bitsets) and the day is inside the horizon.
+final class ServiceCalendar {
+
+    static final int DAY_MIN = 24 * 60;
+
+    private final TrainNetwork net;
+    private final LocalDate date;
+    private final DayOfWeek[] weekdays; // horizon day -> weekday
+
+    ServiceCalendar(TrainNetwork net, LocalDate date, int horizonDays) {
+        if (horizonDays <= 0) throw new IllegalArgumentException("horizonDays must be positive: " + horizonDays);
+        this.net = net;
+        this.date = date;
+        this.weekdays = new DayOfWeek[horizonDays];
+        for (int d = 0; d < horizonDays; d++) {
+            weekdays[d] = date.plusDays(d).getDayOfWeek();
+        }
+    }
+
+    LocalDate date() {
+        return date;
+    }
+
+    int horizonDays() {
+        return weekdays.length;
+    }
+
+    // whether the connection runs on horizon day `day` (0 = the travel date)
+    boolean runsOnDay(int connection, int day) {
+        return day >= 0 && day < weekdays.length && net.runsOn(connection, weekdays[day]);
+    }
+
+    // whether the connection, departing at its time of day, can be boarded at or after minute
+    // `atOrAfter` (a layover after arriving then) on a day it actually runs; the layover rules
+    // keep every wait under a day, so only the first departure at or after that minute counts
+    boolean runsAfter(int connection, int departureMinuteOfDay, int atOrAfter) {
+        int day = atOrAfter / DAY_MIN;
+        if (departureMinuteOfDay < atOrAfter % DAY_MIN) day++;
+        return runsOnDay(connection, day);
+    }
+}
@@ -0,0 +1,324 @@
+package search;
+
+import domain.BookingPolicies;
+import domain.Itinerary;
+import domain.ItineraryComparators;
+import domain.Route;
+import infra.CityBounds;
+import infra.TrainNetwork;
+import infra.TransferGraph;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Best k itineraries under a sort order, produced lazily.
+// For the sort keys below the search is best-first: partial paths are expanded in order of
+// a lower bound on their final key (A* for duration, using CityBounds), so results come out
+// already sorted and an iterator can hand out the first ones while the rest are still being
+// searched. Once k results are known, paths whose bound is past the k-th are dropped.
+// Any other comparator falls back to enumerating every path into a bounded heap of size k.
+// Itinerary rules are the BFS engine's: leg filters, layovers, no revisits, maxTransfers
+// and the direct-route policy.
+public final class TopKSearchService {
+
+    private TopKSearchService() {
+    }
+
+    // sort keys with a lower bound that only grows as a path is extended
+    public enum SortKey {
+        DURATION(ItineraryComparators.BY_TOTAL_DURATION
+                .thenComparing(ItineraryComparators.BY_TRANSFERS)),
+        TRANSFERS(ItineraryComparators.BY_TRANSFERS
+                .thenComparing(ItineraryComparators.BY_TOTAL_DURATION)),
+        PRICE_FIRST(ItineraryComparators.BY_FIRST_CLASS_PRICE
+                .thenComparing(ItineraryComparators.BY_TOTAL_DURATION)
+                .thenComparing(ItineraryComparators.BY_TRANSFERS)),
+        PRICE_SECOND(ItineraryComparators.BY_SECOND_CLASS_PRICE
+                .thenComparing(ItineraryComparators.BY_TOTAL_DURATION)
+                .thenComparing(ItineraryComparators.BY_TRANSFERS));
+
+        // full order of the results; the route ids of the legs break the remaining ties
+        public final Comparator<Itinerary> order;
+
+        SortKey(Comparator<Itinerary> order) {
+            this.order = order.thenComparing(IndirectSearchService::itineraryKey);
+        }
+
+        // SearchQuery.sortBy (DURATION | PRICE_FIRST | PRICE_SECOND), null means DURATION
+        public static SortKey of(String sortBy) {
+            return sortBy == null ? DURATION : valueOf(sortBy.trim().toUpperCase(Locale.ROOT));
+        }
+
+        // the key an ItineraryComparators constant sorts by, or null for any other comparator
+        public static SortKey of(Comparator<Itinerary> cmp) {
+            if (cmp == ItineraryComparators.BY_TOTAL_DURATION) return DURATION;
+            if (cmp == ItineraryComparators.BY_TRANSFERS) return TRANSFERS;
+            if (cmp == ItineraryComparators.BY_FIRST_CLASS_PRICE) return PRICE_FIRST;
+            if (cmp == ItineraryComparators.BY_SECOND_CLASS_PRICE) return PRICE_SECOND;
+            return null;
+        }
+
+        // lower bound on the key of any completion of n; exact once n is at the goal
+        int bound(PartialPath n, CityBounds.Goal toGoal) {
+            return switch (this) {
+                case DURATION -> n.elapsed + toGoal.minutes(n.city);
+                case TRANSFERS -> n.legs - 1 + toGoal.legs(n.city);
+                case PRICE_FIRST -> n.first;
+                case PRICE_SECOND -> n.second;
+            };
+        }
+    }
+
+    // best k by q.getSortBy(); DESC has no useful bound and enumerates every path
+    public static List<Itinerary> find(TrainNetwork net, SearchQuery q, int maxTransfers, int k) {
+        return stream(net, q, maxTransfers, k).toList();
+    }
+
+    public static List<Itinerary> find(TrainNetwork net, SearchQuery q, int maxTransfers, int k,
+            Comparator<Itinerary> order) {
+        return toList(iterator(net, q, maxTransfers, k, order));
+    }
+
+    public static Stream<Itinerary> stream(TrainNetwork net, SearchQuery q, int maxTransfers, int k) {
+        Iterator<Itinerary> it = iterator(net, q, maxTransfers, k);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    public static Iterator<Itinerary> iterator(TrainNetwork net, SearchQuery q, int maxTransfers, int k) {
+        SortKey key = SortKey.of(q.getSortBy());
+        if ("DESC".equalsIgnoreCase(q.getSortDir())) {
+            return bounded(net, q, maxTransfers, k, Comparators.maybeReverse(key.order, q.getSortDir()));
+        }
+        return iterator(net, q, maxTransfers, k, key);
+    }
+
+    public static Iterator<Itinerary> iterator(TrainNetwork net, SearchQuery q, int maxTransfers, int k,
+            Comparator<Itinerary> order) {
+        SortKey key = SortKey.of(order);
+        return key != null
+                ? iterator(net, q, maxTransfers, k, key)
+                : bounded(net, q, maxTransfers, k, order);
+    }
+
+    public static Iterator<Itinerary> iterator(TrainNetwork net, SearchQuery q, int maxTransfers, int k,
+            SortKey key) {
+        return iterator(net, net.cityId(q.getFromCity()), net.cityId(q.getToCity()), q, maxTransfers, k, key);
+    }
+
+    // city-id version; the cities in q are ignored, only its filters apply
+    public static Iterator<Itinerary> iterator(TrainNetwork net, int start, int goal, SearchQuery q,
+            int maxTransfers, int k, SortKey key) {
+        return iterator(net, start, goal, q, maxTransfers, k, key, null);
+    }
+
+    // dated version of iterator(net, q, maxTransfers, k): DESC enumerates every itinerary
+    // that runs on the calendar's days into a bounded heap
+    static Iterator<Itinerary> iterator(TrainNetwork net, int start, int goal, SearchQuery q,
+            int maxTransfers, int k, ServiceCalendar calendar) {
+        SortKey key = SortKey.of(q.getSortBy());
+        if ("DESC".equalsIgnoreCase(q.getSortDir())) {
+            Iterator<Itinerary> all = iterator(net, start, goal, q, maxTransfers, Integer.MAX_VALUE, key, calendar);
+            return bestOf(all, k, Comparators.maybeReverse(key.order, q.getSortDir()));
+        }
+        return iterator(net, start, goal, q, maxTransfers, k, key, calendar);
+    }
+
+    // dated version: the first leg departs on the calendar's travel date and every leg runs on
+    // the day it is taken; null for undated
+    static Iterator<Itinerary> iterator(TrainNetwork net, int start, int goal, SearchQuery q,
+            int maxTransfers, int k, SortKey key, ServiceCalendar calendar) {
+        if (start < 0 || goal < 0 || k <= 0 || !IndirectSearchService.canReach(net, start, goal, maxTransfers)) {
+            return Collections.emptyIterator();
+        }
+        return new BestFirst(net, start, goal, q, maxTransfers, k, key, calendar);
+    }
+
+    // any comparator: every path is enumerated, a max-heap keeps the best k seen so far
+    private static Iterator<Itinerary> bounded(TrainNetwork net, SearchQuery q, int maxTransfers, int k,
+            Comparator<Itinerary> order) {
+        if (k <= 0) {
+            return Collections.emptyIterator();
+        }
+        return bestOf(IndirectSearchService.findBreadthFirst(net, q, maxTransfers, Integer.MAX_VALUE).iterator(),
+                k, order);
+    }
+
+    // the best k of all under order, sorted
+    private static Iterator<Itinerary> bestOf(Iterator<Itinerary> all, int k, Comparator<Itinerary> order) {
+        if (k <= 0) {
+            return Collections.emptyIterator();
+        }
+        PriorityQueue<Itinerary> worstFirst = new PriorityQueue<>(k + 1, order.reversed());
+        while (all.hasNext()) {
+            Itinerary it = all.next();
+            worstFirst.add(it);
+            if (worstFirst.size() > k) {
+                worstFirst.poll();
+            }
+        }
+        List<Itinerary> best = new ArrayList<>(worstFirst);
+        best.sort(order);
+        return best.iterator();
+    }
+
+    private static List<Itinerary> toList(Iterator<Itinerary> it) {
+        List<Itinerary> out = new ArrayList<>();
+        it.forEachRemaining(out::add);
+        return out;
+    }
+
+    // Lazy best-first search. Itineraries that reached the goal wait in `ready` until no open
+    // path can still tie with or beat them, then come out in the full sort order.
+    private static final class BestFirst implements Iterator<Itinerary> {
+
+        private final TrainNetwork net;
+        private final int start;
+        private final int goal;
+        private final int k;
+        private final SortKey key;
+        private final CompiledQuery leg;
+        private final CityBounds.Goal toGoal;
+        private final TransferGraph transfers;
+        private final int maxLegs;
+        private final int maxTotal;
+        private final ServiceCalendar calendar;
+
+        private final PriorityQueue<Node> open = new PriorityQueue<>();
+        private final PriorityQueue<Itinerary> ready;
+        private final Set<String> seenKeys = new HashSet<>();
+        private long seq;
+        private int found;               // goal itineraries accepted so far
+        private int cutoff = Integer.MAX_VALUE; // key of the k-th one, once there are k
+        private int returned;
+
+        BestFirst(TrainNetwork net, int start, int goal, SearchQuery q, int maxTransfers, int k, SortKey key,
+                ServiceCalendar calendar) {
+            this.net = net;
+            this.calendar = calendar;
+            this.start = start;
+            this.goal = goal;
+            this.k = k;
+            this.key = key;
+            this.leg = IndirectSearchService.legFilter(q);
+            this.toGoal = net.getCityBounds().toward(goal);
+            this.transfers = net.getTransferGraph();
+            this.maxLegs = Math.max(0, maxTransfers) + 1;
+            this.maxTotal = BookingPolicies.maxTotalMinutes(IndirectSearchService.directDurationMinutes(net, start, goal));
+            this.ready = new PriorityQueue<>(key.order);
+
+            for (int e = net.departuresStart(start); e < net.departuresEnd(start); e++) {
+                int id = net.departureEdge(e);
+                Route r = net.route(id);
+                if (leg.matches(r) && (calendar == null || calendar.runsOnDay(id, 0))) {
+                    push(id, r, null, r.getDurationMinutes());
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (returned >= k) {
+                return false;
+            }
+            while (true) {
+                Itinerary best = ready.peek();
+                if (best != null && (open.isEmpty() || open.peek().bound > keyOf(best))) {
+                    return true; // nothing still open can come before it
+                }
+                if (open.isEmpty()) {
+                    return false;
+                }
+                step();
+            }
+        }
+
+        @Override
+        public Itinerary next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            returned++;
+            return ready.poll();
+        }
+
+        private void step() {
+            Node cur = open.poll();
+            if (cur.bound > cutoff) {
+                open.clear(); // the k best are all known
+                return;
+            }
+            if (cur.city == goal) {
+                Itinerary it = cur.toItinerary(net); // only paths that reach the goal become itineraries
+                if (seenKeys.add(IndirectSearchService.itineraryKey(it))) {
+                    ready.add(it);
+                    if (++found == k) {
+                        cutoff = cur.bound; // goals come out by key, so this is the k-th best key
+                    }
+                }
+                return;
+            }
+            if (cur.legs >= maxLegs) {
+                return;
+            }
+
+            for (int e = transfers.start(cur.connection); e < transfers.end(cur.connection); e++) {
+                int id = transfers.edge(e);
+                Route nxt = net.route(id);
+                if (!leg.matches(nxt)) {
+                    continue;
+                }
+                int city = net.arrivalCityOf(id);
+                if (city != goal && (city == start || cur.visits(city))) {
+                    continue;
+                }
+                if (calendar != null && !calendar.runsAfter(id, nxt.getDepartureMinuteOfDay(), cur.arrivalAbs())) {
+                    continue; // does not run on the day it would be taken
+                }
+                push(id, nxt, cur, cur.elapsed + transfers.gap(e) + nxt.getDurationMinutes());
+            }
+        }
+
+        private void push(int id, Route r, Node parent, int elapsed) {
+            int city = net.arrivalCityOf(id);
+            int legs = parent == null ? 1 : parent.legs + 1;
+            if (!IndirectSearchService.withinBounds(toGoal, city, maxLegs - legs, elapsed, maxTotal)) {
+                return; // cannot reach the goal in time or within the transfers left
+            }
+            Node n = new Node(id, city, parent, r, elapsed, seq++, key, toGoal);
+            if (n.bound <= cutoff) {
+                open.add(n);
+            }
+        }
+
+        private int keyOf(Itinerary it) {
+            return switch (key) {
+                case DURATION -> it.getTotalDurationMinutes();
+                case TRANSFERS -> it.getTransferCount();
+                case PRICE_FIRST -> it.getTotalFirstClassPrice();
+                case PRICE_SECOND -> it.getTotalSecondClassPrice();
+            };
+        }
+    }
+
+    // a partial path in the open queue, ordered by its bound
+    static final class Node extends PartialPath implements Comparable<Node> {
+
+        final long seq;      // insertion order, breaks ties so the search is deterministic
+        final int bound;     // SortKey lower bound
+
+        Node(int connection, int city, Node parent, Route r, int elapsed, long seq, SortKey key,
+                CityBounds.Goal toGoal) {
+            super(connection, city, parent, r, elapsed);
+            this.seq = seq;
+            this.bound = key.bound(this, toGoal);
+        }
+
+        @Override
+        public int compareTo(Node o) {
+            if (bound != o.bound) return Integer.compare(bound, o.bound);
+            if (legs != o.legs) return Integer.compare(legs, o.legs);
+            return Long.compare(seq, o.seq);
+        }
+    }
+}
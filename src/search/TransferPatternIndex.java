@@ -0,0 +1,309 @@
+package search;
+
+import infra.TrainNetwork;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32C;
+
+/**
+ * Transfer patterns: for every origin and destination, the sequences of cities to change
+ * trains in that the best journeys use. A journey is best when nothing leaving the origin at
+ * the same time arrives earlier with no more transfers. Built offline once per timetable, so a
+ * query only has to try the few patterns of its city pair (TransferPatternSearchService).
+ *
+ * Built with one ProfileSearchService backward pass per destination: it gives every connection
+ * the earliest arrival per number of transfers left, and each origin departure whose arrival
+ * improves on one transfer fewer contributes the transfer cities of that journey. Without
+ * filters and undated. When that journey passes a city twice, the fastest one with as many
+ * transfers that does not gives the pattern instead (ProfileSearchService.simplest), since
+ * searches never return the other.
+ *
+ * Layout, all int arrays: the destinations of origin o are dest[destOffsets[o] ..
+ * destOffsets[o + 1]), ascending; the patterns of destination slot d are patternOffsets[d] ..
+ * patternOffsets[d + 1]; the transfer cities of pattern p are hops[hopOffsets[p] ..
+ * hopOffsets[p + 1]), none for a direct connection.
+ *
+ * File format (big-endian, DataOutputStream): int magic, int format version, long network
+ * fingerprint, int maxTransfers, int cityCount, then destOffsets, dest, patternOffsets,
+ * hopOffsets and hops, each as int length + ints.
+ */
+public final class TransferPatternIndex {
+
+    public static final int MAGIC = 0x54504931; // "TPI1"
+    public static final int VERSION = 1;
+
+    private final long networkVersion;   // TrainNetwork.getVersion() the index answers for
+    private final long fingerprint;
+    private final int maxTransfers;
+    private final int[] destOffsets;
+    private final int[] dest;
+    private final int[] patternOffsets;
+    private final int[] hopOffsets;
+    private final int[] hops;
+
+    private TransferPatternIndex(long networkVersion, long fingerprint, int maxTransfers, int[] destOffsets,
+            int[] dest, int[] patternOffsets, int[] hopOffsets, int[] hops) {
+        this.networkVersion = networkVersion;
+        this.fingerprint = fingerprint;
+        this.maxTransfers = maxTransfers;
+        this.destOffsets = destOffsets;
+        this.dest = dest;
+        this.patternOffsets = patternOffsets;
+        this.hopOffsets = hopOffsets;
+        this.hops = hops;
+    }
+
+    public static TransferPatternIndex build(TrainNetwork net, int maxTransfers) {
+        return build(net, maxTransfers, null);
+    }
+
+    // pool may be null to run every destination on the calling thread
+    public static TransferPatternIndex build(TrainNetwork net, int maxTransfers, ForkJoinPool pool) {
+        int cities = net.getCityCount();
+        int mt = Math.max(0, maxTransfers);
+        CompiledQuery anyLeg = CompiledQuery.forLegs(unfiltered());
+
+        GoalPatterns[] perGoal = new GoalPatterns[cities];
+        if (pool == null) {
+            for (int g = 0; g < cities; g++) perGoal[g] = patternsInto(net, g, mt, anyLeg);
+        } else {
+            List<Callable<GoalPatterns>> tasks = new ArrayList<>(cities);
+            for (int g = 0; g < cities; g++) {
+                int goal = g;
+                tasks.add(() -> patternsInto(net, goal, mt, anyLeg));
+            }
+            List<Future<GoalPatterns>> done = pool.invokeAll(tasks);
+            for (int g = 0; g < cities; g++) {
+                try {
+                    perGoal[g] = done.get(g).get();
+                } catch (Exception e) {
+                    throw new IllegalStateException("transfer pattern build failed", e.getCause() != null ? e.getCause() : e);
+                }
+            }
+        }
+
+        // rows are per destination, the index is per origin: count, then fill in goal order
+        int[] destOffsets = new int[cities + 1];
+        for (GoalPatterns gp : perGoal) {
+            for (int o : gp.origins) destOffsets[o + 1]++;
+        }
+        for (int c = 0; c < cities; c++) destOffsets[c + 1] += destOffsets[c];
+        int slots = destOffsets[cities];
+        int[] dest = new int[slots];
+        int[] rowOf = new int[slots];    // slot -> its row in perGoal[dest[slot]]
+        int[] fill = Arrays.copyOf(destOffsets, cities);
+        for (int g = 0; g < cities; g++) {
+            GoalPatterns gp = perGoal[g];
+            for (int r = 0; r < gp.origins.length; r++) {
+                int slot = fill[gp.origins[r]]++;
+                dest[slot] = g;
+                rowOf[slot] = r;
+            }
+        }
+        int[] patternOffsets = new int[slots + 1];
+        int hopCount = 0;
+        for (int s = 0; s < slots; s++) {
+            GoalPatterns gp = perGoal[dest[s]];
+            int r = rowOf[s];
+            patternOffsets[s + 1] = patternOffsets[s] + gp.rowStart[r + 1] - gp.rowStart[r];
+            hopCount += gp.hopStart[gp.rowStart[r + 1]] - gp.hopStart[gp.rowStart[r]];
+        }
+        int[] hopOffsets = new int[patternOffsets[slots] + 1];
+        int[] hops = new int[hopCount];
+        int p = 0, h = 0;
+        for (int s = 0; s < slots; s++) {
+            GoalPatterns gp = perGoal[dest[s]];
+            int r = rowOf[s];
+            for (int q = gp.rowStart[r]; q < gp.rowStart[r + 1]; q++) {
+                for (int k = gp.hopStart[q]; k < gp.hopStart[q + 1]; k++) hops[h++] = gp.hops[k];
+                hopOffsets[++p] = h;
+            }
+        }
+        return new TransferPatternIndex(net.getVersion(), fingerprint(net), mt, destOffsets, dest,
+                patternOffsets, hopOffsets, hops);
+    }
+
+    // the patterns of every origin towards goal, origins ascending
+    private record GoalPatterns(int[] origins, int[] rowStart, int[] hopStart, int[] hops) {
+    }
+
+    private static GoalPatterns patternsInto(TrainNetwork net, int goal, int maxTransfers, CompiledQuery anyLeg) {
+        int levels = maxTransfers + 1;
+        ProfileSearchService.Table table = ProfileSearchService.table(net, -1, goal, anyLeg, levels,
+                DatedSearchService.defaultHorizonDays(maxTransfers), null, 0, Long.MAX_VALUE);
+        int n = table.n();
+        int[][] arrival = table.arrival();
+        int[][] next = table.next();
+
+        TreeMap<Integer, List<int[]>> byOrigin = new TreeMap<>();
+        int[] path = new int[levels + 1];
+        for (int s = 0; s < n; s++) { // day 0 departures
+            int origin = net.departureCityOf(s);
+            if (origin == goal) {
+                continue;
+            }
+            boolean fewerSimple = false; // the journey with one transfer fewer passed no city twice
+            for (int k = 0; k < levels; k++) {
+                int arr = arrival[k][s];
+                if (arr == ProfileSearchService.NONE || (k > 0 && arr == arrival[k - 1][s] && fewerSimple)) {
+                    continue; // no journey, or one transfer fewer arrives as early
+                }
+                int[] journey = ProfileSearchService.follow(net, n, s, k, next);
+                fewerSimple = journey != null;
+                if (journey == null) {
+                    // it passes a city twice: the fastest journey that does not gives the pattern
+                    journey = ProfileSearchService.simplest(net, table, goal, s, k);
+                    if (journey == null) {
+                        continue;
+                    }
+                }
+                int len = 0;
+                path[len++] = origin;
+                for (int inst : journey) path[len++] = net.arrivalCityOf(inst % n);
+                int[] transferCities = Arrays.copyOfRange(path, 1, len - 1);
+                List<int[]> list = byOrigin.computeIfAbsent(origin, o -> new ArrayList<>());
+                boolean known = false;
+                for (int[] other : list) known |= Arrays.equals(other, transferCities);
+                if (!known) list.add(transferCities);
+            }
+        }
+
+        int[] origins = new int[byOrigin.size()];
+        int[] rowStart = new int[origins.length + 1];
+        int patterns = 0, hopCount = 0;
+        for (List<int[]> list : byOrigin.values()) {
+            patterns += list.size();
+            for (int[] t : list) hopCount += t.length;
+        }
+        int[] hopStart = new int[patterns + 1];
+        int[] hops = new int[hopCount];
+        int r = 0, p = 0, h = 0;
+        for (Map.Entry<Integer, List<int[]>> e : byOrigin.entrySet()) {
+            origins[r] = e.getKey();
+            for (int[] t : e.getValue()) {
+                for (int c : t) hops[h++] = c;
+                hopStart[++p] = h;
+            }
+            rowStart[++r] = p;
+        }
+        return new GoalPatterns(origins, rowStart, hopStart, hops);
+    }
+
+    private static SearchQuery unfiltered() {
+        SearchQuery q = new SearchQuery(null, null, null, null, null, null, null, null,
+                "ANY", null, "DURATION", "ASC");
+        q.normalize();
+        return q;
+    }
+
+    // ---- lookups ----
+
+    // whether the index was built for (or read against) this network load
+    public boolean answersFor(TrainNetwork net) {
+        return net.getVersion() == networkVersion;
+    }
+
+    public int getMaxTransfers() {
+        return maxTransfers;
+    }
+
+    // the transfer cities of every pattern from origin to destination, empty when there is none
+    public List<int[]> patterns(int origin, int destination) {
+        if (origin < 0 || destination < 0 || origin + 1 >= destOffsets.length) {
+            return List.of();
+        }
+        int slot = Arrays.binarySearch(dest, destOffsets[origin], destOffsets[origin + 1], destination);
+        if (slot < 0) {
+            return List.of();
+        }
+        List<int[]> out = new ArrayList<>(patternOffsets[slot + 1] - patternOffsets[slot]);
+        for (int p = patternOffsets[slot]; p < patternOffsets[slot + 1]; p++) {
+            out.add(Arrays.copyOfRange(hops, hopOffsets[p], hopOffsets[p + 1]));
+        }
+        return out;
+    }
+
+    public int pairCount() {
+        return dest.length;
+    }
+
+    public int patternCount() {
+        return patternOffsets[patternOffsets.length - 1];
+    }
+
+    // bytes held by the index arrays
+    public long memoryBytes() {
+        return 4L * (destOffsets.length + dest.length + patternOffsets.length + hopOffsets.length + hops.length);
+    }
+
+    // ---- file ----
+
+    public void write(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(fingerprint);
+            out.writeInt(maxTransfers);
+            out.writeInt(destOffsets.length - 1);
+            for (int[] a : new int[][] { destOffsets, dest, patternOffsets, hopOffsets, hops }) {
+                out.writeInt(a.length);
+                for (int v : a) out.writeInt(v);
+            }
+        }
+    }
+
+    // reads an index written for the same timetable as net; it then answers for net's version
+    public static TransferPatternIndex read(Path file, TrainNetwork net) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("not a transfer pattern index: " + file);
+            }
+            long fp = in.readLong();
+            int mt = in.readInt();
+            int cities = in.readInt();
+            if (fp != fingerprint(net) || cities != net.getCityCount()) {
+                throw new IOException("transfer pattern index was built for another timetable: " + file);
+            }
+            int[][] a = new int[5][];
+            for (int i = 0; i < a.length; i++) {
+                a[i] = new int[in.readInt()];
+                for (int k = 0; k < a[i].length; k++) a[i][k] = in.readInt();
+            }
+            return new TransferPatternIndex(net.getVersion(), fp, mt, a[0], a[1], a[2], a[3], a[4]);
+        }
+    }
+
+    // CRC32C over the cities and the timetable in connection id order
+    private static long fingerprint(TrainNetwork net) {
+        CRC32C crc = new CRC32C();
+        for (int c = 0; c < net.getCityCount(); c++) {
+            crc.update(net.cityName(c).getBytes(StandardCharsets.UTF_8));
+            crc.update(0);
+        }
+        for (int i = 0; i < net.getConnectionCount(); i++) {
+            String id = net.route(i).getRouteId();
+            if (id != null) crc.update(id.getBytes(StandardCharsets.UTF_8));
+            int[] cols = { net.departureCityOf(i), net.arrivalCityOf(i), net.route(i).getDepartureMinuteOfDay(),
+                    net.route(i).getArrivalMinuteOfDay() };
+            for (int v : cols) {
+                crc.update(v >>> 24);
+                crc.update(v >>> 16);
+                crc.update(v >>> 8);
+                crc.update(v);
+            }
+        }
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,106 @@
+package search;
+
+import domain.BookingPolicies;
+import domain.Itinerary;
+import domain.ItineraryComparators;
+import domain.Route;
+import domain.TimeUtil;
+import infra.TrainNetwork;
+import infra.TransferGraph;
+import java.util.*;
+import java.util.function.Consumer;
+
+// Queries answered from a TransferPatternIndex: only the city pair's patterns are tried against
+// the timetable, each a short chain of departures between known cities. Every itinerary along
+// a pattern is collected under the usual layover and direct-route rules, fastest first as the
+// CSA engine sorts them. The fastest journeys that pass no city twice (the only ones any engine
+// returns) always follow a pattern; slower ones only when they share one with a best journey.
+//
+// The index only knows unfiltered, undated, fastest-first queries. Anything else (filters,
+// another sort, more transfers than it was built for, or a reloaded network) goes to
+// IndirectSearchService.find instead.
+public final class TransferPatternSearchService {
+
+    private TransferPatternSearchService() {
+    }
+
+    public static List<Itinerary> find(TransferPatternIndex index, TrainNetwork net, SearchQuery q,
+            int maxTransfers, int maxResults) {
+        if (index == null || !index.answersFor(net) || maxTransfers > index.getMaxTransfers() || !isPlain(q)) {
+            return IndirectSearchService.find(net, q, maxTransfers, maxResults);
+        }
+        int start = net.cityId(q.getFromCity());
+        int goal = net.cityId(q.getToCity());
+        if (start < 0 || goal < 0 || start == goal || maxResults <= 0) {
+            return List.of();
+        }
+        Integer directDurationMinutes = IndirectSearchService.directDurationMinutes(net, start, goal);
+        int maxTotal = BookingPolicies.maxTotalMinutes(directDurationMinutes);
+        TransferGraph transfers = net.getTransferGraph();
+
+        List<Itinerary> results = new ArrayList<>();
+        Set<String> seenKeys = new HashSet<>();
+        for (int[] hops : index.patterns(start, goal)) {
+            if (hops.length > maxTransfers) {
+                continue;
+            }
+            int[] cities = new int[hops.length + 2];
+            cities[0] = start;
+            System.arraycopy(hops, 0, cities, 1, hops.length);
+            cities[cities.length - 1] = goal;
+            follow(net, transfers, cities, 0, null, maxTotal, it -> {
+                if (BookingPolicies.isOkComparedToDirect(it, directDurationMinutes)
+                        && seenKeys.add(IndirectSearchService.itineraryKey(it))) {
+                    results.add(it);
+                }
+            });
+        }
+        results.sort(ItineraryComparators.BY_TOTAL_DURATION.thenComparing(ItineraryComparators.BY_TRANSFERS));
+        return results.size() > maxResults ? new ArrayList<>(results.subList(0, maxResults)) : results;
+    }
+
+    // the query with its cities dropped is the default one: nothing the index does not know
+    static boolean isPlain(SearchQuery q) {
+        SearchQuery c = q.canonical();
+        return c.getDepStart() == null && c.getDepEnd() == null && c.getArrStart() == null && c.getArrEnd() == null
+                && (c.getTrainType() == null || c.getTrainType().isBlank())
+                && (c.getDays() == null || c.getDays().isEmpty())
+                && c.getMaxPrice() == null
+                && "DURATION".equals(c.getSortBy()) && "ASC".equals(c.getSortDir());
+    }
+
+    // every chain of departures from cities[leg] to cities[leg + 1] onwards, after path
+    private static void follow(TrainNetwork net, TransferGraph transfers, int[] cities, int leg, PartialPath path, int maxTotal,
+            Consumer<Itinerary> found) {
+        int from = cities[leg];
+        int to = cities[leg + 1];
+        Route last = path == null ? null : net.route(path.connection);
+        for (int k = net.departuresStart(from); k < net.departuresEnd(from); k++) {
+            int id = net.departureEdge(k);
+            if (net.arrivalCityOf(id) != to) {
+                continue;
+            }
+            Route r = net.route(id);
+            PartialPath next;
+            if (path == null) {
+                next = new PartialPath(id, to, r);
+            } else {
+                if (!transfers.allows(path.connection, id)) {
+                    continue;
+                }
+                int elapsed = path.elapsed
+                        + TimeUtil.diff(last.getArrivalMinuteOfDay(), r.getDepartureMinuteOfDay())
+                        + r.getDurationMinutes();
+                next = new PartialPath(id, to, path, r, elapsed);
+            }
+            if (next.elapsed > maxTotal) {
+                continue;
+            }
+            if (leg + 2 == cities.length) {
+                found.accept(next.toItinerary(net));
+            } else {
+                follow(net, transfers, cities, leg + 1, next, maxTotal, found);
+            }
+        }
+    }
+}